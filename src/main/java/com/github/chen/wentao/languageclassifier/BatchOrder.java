@@ -0,0 +1,17 @@
+package com.github.chen.wentao.languageclassifier;
+
+public enum BatchOrder {
+    /**
+     * Consecutive words in data set order, the same batches every epoch
+     */
+    FIXED,
+    /**
+     * A new permutation of the words every epoch
+     */
+    SHUFFLED,
+    /**
+     * Every batch holds an equal share of each language's words, reshuffled per language whenever that language's
+     * words run out; languages with fewer words are repeated more often
+     */
+    STRATIFIED
+}
@@ -0,0 +1,143 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Decides which rows of a data set make up each mini-batch. The order of every epoch is a function of the seed and the
+ * epoch alone, so batches can be requested from any index (e.g. after resuming from a checkpoint) and come out the same.
+ * Shuffling reuses one index array per stratum; not thread safe unless the order is {@link BatchOrder#FIXED}.
+ */
+final class BatchSchedule {
+
+    private final BatchOrder order;
+    private final int numRows;
+    private final int batchSize;
+    private final int batchCount;
+    private final long seed;
+    // Row indices of each stratum in data set order; a single stratum of all rows unless stratified
+    private final int[][] strata;
+    private final int[][] permutations;
+    private final int[] permutationEpochs;
+
+    private BatchSchedule(BatchOrder order, int numRows, int batchSize, long seed, int[][] strata) {
+        if (batchSize <= 0) throw new IllegalArgumentException(String.format("batch size (%d) must be greater than 0", batchSize));
+        this.order = order;
+        this.numRows = numRows;
+        this.batchSize = batchSize;
+        this.batchCount = (numRows - 1) / batchSize + 1;
+        this.seed = seed;
+        this.strata = strata;
+        this.permutations = new int[strata.length][];
+        this.permutationEpochs = new int[strata.length];
+        Arrays.fill(permutationEpochs, -1);
+    }
+
+    static BatchSchedule fixed(int numRows, int batchSize) {
+        return new BatchSchedule(BatchOrder.FIXED, numRows, batchSize, 0, new int[][]{null});
+    }
+
+    static BatchSchedule create(LanguageWordsDataSet dataSet, int batchSize, BatchOrder order, Random random) {
+        int numRows = dataSet.numWords();
+        if (order == BatchOrder.FIXED) {
+            return fixed(numRows, batchSize);
+        }
+        long seed = random.nextLong();
+        if (order == BatchOrder.SHUFFLED) {
+            return new BatchSchedule(order, numRows, batchSize, seed, new int[][]{null});
+        }
+        // Words in several languages count towards the first one
+        int numLanguages = dataSet.getLanguages().length;
+        int[] strataSizes = new int[numLanguages];
+        int[] rowStrata = new int[numRows];
+        for (int row = 0; row < numRows; row++) {
+            int language = 0;
+            while (language < numLanguages - 1 && !dataSet.isWordInLanguage(row, language)) {
+                language++;
+            }
+            rowStrata[row] = language;
+            strataSizes[language]++;
+        }
+        int[][] strata = Arrays.stream(strataSizes).filter(size -> size > 0).mapToObj(int[]::new).toArray(int[][]::new);
+        int[] strataIndices = new int[numLanguages];
+        for (int language = 0, stratum = 0; language < numLanguages; language++) {
+            strataIndices[language] = strataSizes[language] > 0 ? stratum++ : -1;
+        }
+        int[] filled = new int[strata.length];
+        for (int row = 0; row < numRows; row++) {
+            int stratum = strataIndices[rowStrata[row]];
+            strata[stratum][filled[stratum]++] = row;
+        }
+        return new BatchSchedule(order, numRows, batchSize, seed, strata);
+    }
+
+    int numBatches() {
+        return batchCount;
+    }
+
+    /**
+     * @return the data set rows of the batch, in batch order
+     */
+    int[] rows(int batchIndex) {
+        if (order != BatchOrder.STRATIFIED) {
+            int epoch = batchIndex / batchCount;
+            int batchStart = batchIndex % batchCount * batchSize;
+            int batchEnd = Math.min(batchStart + batchSize, numRows);
+            int[] rows = new int[batchEnd - batchStart];
+            int[] permutation = permutation(0, epoch);
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = permutation == null ? batchStart + i : permutation[batchStart + i];
+            }
+            return rows;
+        }
+        // Each stratum gets batchSize / strata rows; the remainder rotates between strata from batch to batch
+        int numStrata = strata.length;
+        int share = batchSize / numStrata;
+        int remainder = batchSize % numStrata;
+        int[] rows = new int[batchSize];
+        int count = 0;
+        for (int stratum = 0; stratum < numStrata; stratum++) {
+            long position = (long) batchIndex * share + (long) (batchIndex / numStrata) * remainder;
+            for (int previous = batchIndex - batchIndex % numStrata; previous < batchIndex; previous++) {
+                if ((previous + stratum) % numStrata < remainder) {
+                    position++;
+                }
+            }
+            int quota = share + ((batchIndex + stratum) % numStrata < remainder ? 1 : 0);
+            int size = strata[stratum].length;
+            for (int i = 0; i < quota; i++, position++) {
+                rows[count++] = permutation(stratum, (int) (position / size))[(int) (position % size)];
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the order of the stratum's rows in the epoch, or null for data set order of all rows
+     */
+    private int[] permutation(int stratum, int epoch) {
+        int[] rows = strata[stratum];
+        if (order == BatchOrder.FIXED) {
+            return rows;
+        }
+        if (permutationEpochs[stratum] != epoch) {
+            int size = rows != null ? rows.length : numRows;
+            int[] permutation = permutations[stratum];
+            if (permutation == null) {
+                permutation = permutations[stratum] = new int[size];
+            }
+            for (int i = 0; i < size; i++) {
+                permutation[i] = rows != null ? rows[i] : i;
+            }
+            Random random = new Random(seed ^ (stratum * 0x9E3779B97F4A7C15L) ^ (epoch * 0xC2B2AE3D27D4EB4FL));
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = permutation[i];
+                permutation[i] = permutation[j];
+                permutation[j] = swap;
+            }
+            permutationEpochs[stratum] = epoch;
+        }
+        return permutations[stratum];
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+import com.github.chen.wentao.languageclassifier.languages.LanguageGroup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Two level classifier for many languages. A coarse classifier picks a group of languages, such as a family or a
+ * script, then a classifier trained only on that group picks the language. Each group classifier has its own letter
+ * encoding of just the group's letters, and the coarse classifier collapses the letters that occur in a single group
+ * into one input per group, so neither network grows with the alphabet of all languages together.
+ */
+public class CascadeClassifier {
+
+    private static final String COARSE_DIRECTORY = "coarse";
+
+    private final LanguageClassifier coarseClassifier;
+    private final LanguageGroup[] groups;
+    // null for groups of a single language
+    private final LanguageClassifier[] groupClassifiers;
+
+    private CascadeClassifier(LanguageClassifier coarseClassifier, LanguageGroup[] groups, LanguageClassifier[] groupClassifiers) {
+        this.coarseClassifier = coarseClassifier;
+        this.groups = groups;
+        this.groupClassifiers = groupClassifiers;
+    }
+
+    /**
+     * @param groups   disjoint groups of languages, at least 2
+     * @param coverage fraction of each classifier's words that must fit its maximum word length
+     */
+    public static CascadeClassifier create(List<Language[]> groups, double coverage, Random random) {
+        if (groups.size() < 2) throw new IllegalArgumentException(String.format("number of groups (%d) must be at least 2", groups.size()));
+        Set<String> iso6391s = new HashSet<>();
+        LanguageGroup[] languageGroups = new LanguageGroup[groups.size()];
+        for (int g = 0; g < languageGroups.length; g++) {
+            Language[] languages = groups.get(g);
+            StringBuilder name = new StringBuilder();
+            for (Language language : languages) {
+                if (!iso6391s.add(language.getIso6391())) throw new IllegalArgumentException("Language in more than one group: " + language.getIso6391());
+                name.append(name.length() == 0 ? "" : "+").append(language.getIso6391());
+            }
+            languageGroups[g] = new LanguageGroup(name.toString(), languages);
+        }
+
+        Map<Character, Integer> coarseLetters = coarseLetterEncoding(languageGroups);
+        int coarseLettersCount = 0;
+        for (int encoding : coarseLetters.values()) {
+            coarseLettersCount = Math.max(coarseLettersCount, encoding + 1);
+        }
+        LetterEncoder coarseEncoder = c -> {
+            Integer encoding = coarseLetters.get((char) c);
+            return encoding != null ? encoding : -1;
+        };
+        LanguageWordsDataSet coarseDataSet = new LanguageWordsDataSet(random, languageGroups);
+        LanguageClassifier coarseClassifier = new LanguageClassifier(coarseLettersCount, coarseDataSet.findMaxWordLengthForDataSetCoverage(coverage),
+                coarseEncoder, random, coarseDataSet, languageGroups);
+
+        LanguageClassifier[] groupClassifiers = new LanguageClassifier[languageGroups.length];
+        for (int g = 0; g < languageGroups.length; g++) {
+            Language[] languages = languageGroups[g].getLanguages();
+            if (languages.length > 1) {
+                LanguageWordsDataSet dataSet = new LanguageWordsDataSet(random, languages);
+                groupClassifiers[g] = new LanguageClassifier(Language.countDistinctLetters(languages), dataSet.findMaxWordLengthForDataSetCoverage(coverage),
+                        LetterEncoder.fromLanguages(languages), random, dataSet, languages);
+            }
+        }
+        return new CascadeClassifier(coarseClassifier, languageGroups, groupClassifiers);
+    }
+
+    /**
+     * Groups languages by the Unicode script most of their letters belong to
+     */
+    public static List<Language[]> groupByScript(Language... languages) {
+        Map<Character.UnicodeScript, List<Language>> groups = new LinkedHashMap<>();
+        for (Language language : languages) {
+            Map<Character.UnicodeScript, Integer> counts = new HashMap<>();
+            for (char letter : language.getLetters()) {
+                Character.UnicodeScript script = Character.UnicodeScript.of(letter);
+                if (script != Character.UnicodeScript.COMMON && script != Character.UnicodeScript.INHERITED) {
+                    counts.merge(script, 1, Integer::sum);
+                }
+            }
+            Character.UnicodeScript script = counts.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(Character.UnicodeScript.COMMON);
+            groups.computeIfAbsent(script, s -> new ArrayList<>()).add(language);
+        }
+        List<Language[]> result = new ArrayList<>(groups.size());
+        for (List<Language> group : groups.values()) {
+            result.add(group.toArray(new Language[0]));
+        }
+        return result;
+    }
+
+    // Letters shared by several groups keep their own input since they are what tells those groups apart; letters
+    // of a single group only identify that group, so they share one input per group
+    private static Map<Character, Integer> coarseLetterEncoding(LanguageGroup[] groups) {
+        Map<Character, Integer> letterGroups = new HashMap<>();
+        for (int g = 0; g < groups.length; g++) {
+            for (char letter : groups[g].getLetters()) {
+                letterGroups.merge(letter, g, (existing, group) -> -1);
+            }
+        }
+        Map<Character, Integer> encoding = new HashMap<>();
+        int sharedLetters = 0;
+        for (Map.Entry<Character, Integer> entry : letterGroups.entrySet()) {
+            if (entry.getValue() < 0) {
+                encoding.put(entry.getKey(), sharedLetters++);
+            }
+        }
+        for (Map.Entry<Character, Integer> entry : letterGroups.entrySet()) {
+            if (entry.getValue() >= 0) {
+                encoding.put(entry.getKey(), sharedLetters + entry.getValue());
+            }
+        }
+        return encoding;
+    }
+
+    /**
+     * Trains the coarse classifier, then each group classifier, each with fresh options from the supplier
+     *
+     * @return the coarse classifier's result followed by one per group with more than one language
+     */
+    public List<TrainingResult> train(Supplier<TrainingOptions> options) {
+        List<TrainingResult> results = new ArrayList<>(groups.length + 1);
+        results.add(coarseClassifier.train(options.get(), coarseClassifier.getAllWordsDataSet()));
+        for (LanguageClassifier groupClassifier : groupClassifiers) {
+            if (groupClassifier != null) {
+                results.add(groupClassifier.train(options.get(), groupClassifier.getAllWordsDataSet()));
+            }
+        }
+        return results;
+    }
+
+    public Language predict(String input) {
+        int group = predictGroup(input);
+        LanguageClassifier groupClassifier = groupClassifiers[group];
+        return groupClassifier != null ? groupClassifier.predict(input) : groups[group].getLanguages()[0];
+    }
+
+    public int predictGroup(String input) {
+        return coarseClassifier.predictIndex(input);
+    }
+
+    public Map<Language, Double> process(String input) {
+        return process(input, 1);
+    }
+
+    /**
+     * Probability of each language of the most likely groups, as the coarse classifier's probability of the group
+     * times the group classifier's probability of the language, both normalized to sum to 1. Languages of the other
+     * groups are not evaluated and are absent.
+     */
+    public Map<Language, Double> process(String input, int topGroups) {
+        if (topGroups <= 0) throw new IllegalArgumentException(String.format("number of groups (%d) must be greater than 0", topGroups));
+        double[] groupScores = normalize(coarseClassifier.processOutputs(input));
+        Integer[] ranking = new Integer[groups.length];
+        for (int g = 0; g < ranking.length; g++) {
+            ranking[g] = g;
+        }
+        Arrays.sort(ranking, (g1, g2) -> Double.compare(groupScores[g2], groupScores[g1]));
+        Map<Language, Double> results = new HashMap<>();
+        for (int k = 0; k < Math.min(topGroups, groups.length); k++) {
+            int g = ranking[k];
+            Language[] languages = groups[g].getLanguages();
+            double[] languageScores = groupClassifiers[g] != null ? normalize(groupClassifiers[g].processOutputs(input)) : new double[]{1};
+            for (int i = 0; i < languages.length; i++) {
+                results.put(languages[i], groupScores[g] * languageScores[i]);
+            }
+        }
+        return results;
+    }
+
+    private static double[] normalize(double[] outputs) {
+        double sum = 0;
+        for (double output : outputs) {
+            sum += output;
+        }
+        double[] normalized = new double[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            normalized[i] = sum > 0 ? outputs[i] / sum : 1.0 / outputs.length;
+        }
+        return normalized;
+    }
+
+    /**
+     * Fraction of the first words of the data set predicted correctly, matching languages by ISO 639-1 code
+     */
+    public double accuracy(int testWordsCount, LanguageWordsDataSet dataSet) {
+        Map<String, Integer> indices = new HashMap<>();
+        Language[] dataSetLanguages = dataSet.getLanguages();
+        for (int i = 0; i < dataSetLanguages.length; i++) {
+            indices.put(dataSetLanguages[i].getIso6391(), i);
+        }
+        return dataSet.accuracy(word -> indices.getOrDefault(predict(word).getIso6391(), -1), testWordsCount);
+    }
+
+    public Language[] getLanguages() {
+        List<Language> languages = new ArrayList<>();
+        for (LanguageGroup group : groups) {
+            languages.addAll(Arrays.asList(group.getLanguages()));
+        }
+        return languages.toArray(new Language[0]);
+    }
+
+    public LanguageGroup[] getGroups() {
+        return groups.clone();
+    }
+
+    public LanguageClassifier getCoarseClassifier() {
+        return coarseClassifier;
+    }
+
+    /**
+     * @return the group's classifier, or null if the group has a single language
+     */
+    public LanguageClassifier getGroupClassifier(int group) {
+        return groupClassifiers[group];
+    }
+
+    /**
+     * Saves the coarse classifier and each group classifier in subdirectories of the directory
+     */
+    public void saveToFileBinary(String directoryName) throws IOException {
+        File directory = new File(directoryName);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException(directoryName);
+        }
+        coarseClassifier.saveToFileBinary(new File(directory, COARSE_DIRECTORY).getPath());
+        for (int g = 0; g < groupClassifiers.length; g++) {
+            if (groupClassifiers[g] != null) {
+                groupClassifiers[g].saveToFileBinary(new File(directory, String.valueOf(g)).getPath());
+            }
+        }
+    }
+
+    public static CascadeClassifier loadFromFileBinary(String directoryName) throws IOException {
+        LanguageClassifier coarseClassifier = LanguageClassifier.loadFromFileBinary(new File(directoryName, COARSE_DIRECTORY).getPath());
+        Language[] coarseLanguages = coarseClassifier.getLanguages();
+        LanguageGroup[] groups = new LanguageGroup[coarseLanguages.length];
+        LanguageClassifier[] groupClassifiers = new LanguageClassifier[coarseLanguages.length];
+        for (int g = 0; g < groups.length; g++) {
+            groups[g] = (LanguageGroup) coarseLanguages[g];
+            if (groups[g].getLanguages().length > 1) {
+                groupClassifiers[g] = LanguageClassifier.loadFromFileBinary(new File(directoryName, String.valueOf(g)).getPath());
+            }
+        }
+        return new CascadeClassifier(coarseClassifier, groups, groupClassifiers);
+    }
+}
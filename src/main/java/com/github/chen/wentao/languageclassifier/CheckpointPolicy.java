@@ -0,0 +1,36 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+public class CheckpointPolicy {
+
+    private final Path directory;
+    private final int everyBatches;
+    private final long everyNanos;
+
+    /**
+     * @param everyBatches write a checkpoint after this many batches, 0 to disable
+     * @param every        write a checkpoint once this much time has passed since the last one, 0 to disable
+     */
+    public CheckpointPolicy(Path directory, int everyBatches, long every, TimeUnit unit) {
+        if (directory == null) throw new IllegalArgumentException("checkpoint directory cannot be null");
+        if (everyBatches < 0) throw new IllegalArgumentException(String.format("checkpoint batch interval (%d) cannot be less than 0", everyBatches));
+        if (every < 0) throw new IllegalArgumentException(String.format("checkpoint time interval (%d) cannot be less than 0", every));
+        this.directory = directory;
+        this.everyBatches = everyBatches;
+        this.everyNanos = unit.toNanos(every);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getEveryBatches() {
+        return everyBatches;
+    }
+
+    public long getEveryNanos() {
+        return everyNanos;
+    }
+}
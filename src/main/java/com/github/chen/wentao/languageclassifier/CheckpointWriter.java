@@ -0,0 +1,51 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes checkpoints on a background thread. At most one checkpoint waits behind the one being written; a newer
+ * snapshot replaces a waiting one, so a slow disk never blocks the training thread.
+ */
+final class CheckpointWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckpointWriter.class.getName());
+
+    private final Path directory;
+    private final ThreadPoolExecutor executor;
+
+    CheckpointWriter(Path directory) {
+        this.directory = directory;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1), runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    void submit(TrainingCheckpoint checkpoint) {
+        executor.execute(() -> {
+            try {
+                checkpoint.write(directory);
+                LOGGER.fine(() -> "Wrote checkpoint at iteration " + checkpoint.getIteration());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write checkpoint at iteration " + checkpoint.getIteration(), e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+public class CrossValidation {
+
+    private CrossValidation() {
+    }
+
+    /**
+     * Trains a classifier shaped like {@code template} on every k-fold split of the data set, at most {@code threads}
+     * at a time, and scores each on its held out fold. The folds and the initial weights of every classifier come
+     * from {@code random} before any training starts, so the result is the same for the same seed.
+     *
+     * @param options creates the training options of one fold; called once per fold
+     */
+    public static Result run(LanguageClassifier template, LanguageWordsDataSet dataSet, int k, Supplier<TrainingOptions> options, int threads, Random random) {
+        if (threads <= 0) throw new IllegalArgumentException(String.format("number of threads (%d) must be greater than 0", threads));
+        List<DataSetFold> folds = dataSet.createFolds(k, random);
+        List<Callable<FoldResult>> tasks = new ArrayList<>(k);
+        for (DataSetFold fold : folds) {
+            long seed = random.nextLong();
+            TrainingOptions foldOptions = options.get().random(new Random(random.nextLong()));
+            tasks.add(() -> train(template, fold, foldOptions, seed));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "kfold");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<FoldResult> results = new ArrayList<>(k);
+        try {
+            for (Future<FoldResult> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(results);
+    }
+
+    private static FoldResult train(LanguageClassifier template, DataSetFold fold, TrainingOptions options, long seed) {
+        LanguageWordsDataSet trainingDataSet = fold.getTrainingDataSet();
+        LanguageWordsDataSet validationDataSet = fold.getValidationDataSet();
+        LanguageClassifier languageClassifier = template.newUntrained(template.getFeatureExtractor(), new Random(seed), trainingDataSet);
+        languageClassifier.train(options, trainingDataSet);
+        return new FoldResult(fold.getIndex(), languageClassifier.accuracy(validationDataSet.numWords(), validationDataSet),
+                languageClassifier.cost(0, validationDataSet));
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double standardDeviation(double[] values) {
+        double mean = mean(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+
+    public static class FoldResult {
+        private final int fold;
+        private final double accuracy;
+        private final double cost;
+
+        private FoldResult(int fold, double accuracy, double cost) {
+            this.fold = fold;
+            this.accuracy = accuracy;
+            this.cost = cost;
+        }
+
+        public int getFold() {
+            return fold;
+        }
+
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    public static class Result {
+        private final List<FoldResult> folds;
+        private final double[] accuracies;
+        private final double[] costs;
+
+        private Result(List<FoldResult> folds) {
+            this.folds = Collections.unmodifiableList(folds);
+            this.accuracies = folds.stream().mapToDouble(FoldResult::getAccuracy).toArray();
+            this.costs = folds.stream().mapToDouble(FoldResult::getCost).toArray();
+        }
+
+        public List<FoldResult> getFolds() {
+            return folds;
+        }
+
+        public double getMeanAccuracy() {
+            return mean(accuracies);
+        }
+
+        /**
+         * @return the sample standard deviation of the fold accuracies
+         */
+        public double getAccuracyStandardDeviation() {
+            return standardDeviation(accuracies);
+        }
+
+        public double getMeanCost() {
+            return mean(costs);
+        }
+
+        public double getCostStandardDeviation() {
+            return standardDeviation(costs);
+        }
+    }
+}
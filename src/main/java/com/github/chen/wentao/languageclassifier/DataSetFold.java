@@ -0,0 +1,32 @@
+package com.github.chen.wentao.languageclassifier;
+
+public class DataSetFold {
+
+    private final int index;
+    private final LanguageWordsDataSet trainingDataSet;
+    private final LanguageWordsDataSet validationDataSet;
+
+    DataSetFold(int index, LanguageWordsDataSet trainingDataSet, LanguageWordsDataSet validationDataSet) {
+        this.index = index;
+        this.trainingDataSet = trainingDataSet;
+        this.validationDataSet = validationDataSet;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return every word not in this fold
+     */
+    public LanguageWordsDataSet getTrainingDataSet() {
+        return trainingDataSet;
+    }
+
+    /**
+     * @return the words of this fold
+     */
+    public LanguageWordsDataSet getValidationDataSet() {
+        return validationDataSet;
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.LanguageWordsDataSet.WordAndLanguage;
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Word length histogram, per language letter frequencies and overlaps between languages of a data set, computed in one
+ * parallel pass over its words. Obtained through {@link LanguageWordsDataSet#statistics()}, which caches it.
+ */
+public final class DataSetStatistics {
+
+    private final Language[] languages;
+    private final long[] lengthCounts;
+    private final int numWords;
+    private final char[] letters;
+    // [language][letter], the last column counts characters that are not a letter of any of the languages
+    private final long[][] letterCounts;
+    // [language][language], words in both languages; the diagonal is the number of words in each language
+    private final long[][] overlaps;
+
+    private DataSetStatistics(Language[] languages, char[] letters, Accumulator accumulator, int numWords) {
+        this.languages = languages;
+        this.letters = letters;
+        int maxLength = accumulator.lengthCounts.length - 1;
+        while (maxLength > 0 && accumulator.lengthCounts[maxLength] == 0) {
+            maxLength--;
+        }
+        this.lengthCounts = Arrays.copyOf(accumulator.lengthCounts, maxLength + 1);
+        this.letterCounts = accumulator.letterCounts;
+        this.overlaps = accumulator.overlaps;
+        this.numWords = numWords;
+    }
+
+    static DataSetStatistics compute(Language[] languages, List<WordAndLanguage> words) {
+        Set<Character> letterSet = Language.distinctLetters(languages);
+        char[] letters = new char[letterSet.size()];
+        int i = 0;
+        for (char letter : letterSet) {
+            letters[i++] = letter;
+        }
+        Arrays.sort(letters);
+        int[] letterIndices = new int[Character.MAX_VALUE + 1];
+        Arrays.fill(letterIndices, letters.length);
+        for (int j = 0; j < letters.length; j++) {
+            letterIndices[letters[j]] = j;
+        }
+        Accumulator accumulator = IntStream.range(0, words.size()).parallel().collect(
+                () -> new Accumulator(languages.length, letters.length),
+                (acc, index) -> acc.add(words.get(index), letterIndices),
+                Accumulator::merge);
+        return new DataSetStatistics(languages, letters, accumulator, words.size());
+    }
+
+    public int getNumWords() {
+        return numWords;
+    }
+
+    public int getMaxWordLength() {
+        return lengthCounts.length - 1;
+    }
+
+    /**
+     * Number of words of each length, indexed by length
+     */
+    public long[] getLengthHistogram() {
+        return lengthCounts.clone();
+    }
+
+    /**
+     * The shortest length such that at least the given fraction of words are no longer than it
+     */
+    public int getMaxWordLengthForCoverage(double fractionWordsCovered) {
+        double cumulativeTotal = 0;
+        for (int i = 0; i < lengthCounts.length; i++) {
+            cumulativeTotal += lengthCounts[i];
+            if (cumulativeTotal / numWords >= fractionWordsCovered) {
+                return i;
+            }
+        }
+        return getMaxWordLength();
+    }
+
+    public Language[] getLanguages() {
+        return languages.clone();
+    }
+
+    /**
+     * Distinct letters of the data set's languages, sorted
+     */
+    public char[] getLetters() {
+        return letters.clone();
+    }
+
+    /**
+     * Number of words in the language
+     */
+    public long getWordCount(int languageIndex) {
+        return overlaps[languageIndex][languageIndex];
+    }
+
+    /**
+     * Number of words that belong to both languages
+     */
+    public long getOverlap(int languageIndex1, int languageIndex2) {
+        return overlaps[languageIndex1][languageIndex2];
+    }
+
+    /**
+     * Occurrences of each letter of the data set's languages in the words of one language, most frequent first
+     */
+    public List<Map.Entry<Character, Long>> getLetterFrequencies(int languageIndex) {
+        List<Map.Entry<Character, Long>> frequencies = new ArrayList<>(letters.length);
+        for (int i = 0; i < letters.length; i++) {
+            if (letterCounts[languageIndex][i] > 0) {
+                frequencies.add(new AbstractMap.SimpleImmutableEntry<>(letters[i], letterCounts[languageIndex][i]));
+            }
+        }
+        frequencies.sort(Collections.reverseOrder(Map.Entry.comparingByValue()));
+        return frequencies;
+    }
+
+    /**
+     * Total letters in the words of one language, including characters that are not letters of any language
+     */
+    public long getLetterTotal(int languageIndex) {
+        long total = 0;
+        for (long count : letterCounts[languageIndex]) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Occurrences of characters that are not letters of any of the data set's languages in the words of one language
+     */
+    public long getUnknownLetterCount(int languageIndex) {
+        return letterCounts[languageIndex][letters.length];
+    }
+
+    private static class Accumulator {
+        private long[] lengthCounts = new long[1];
+        private final long[][] letterCounts;
+        private final long[][] overlaps;
+
+        private Accumulator(int numLanguages, int numLetters) {
+            this.letterCounts = new long[numLanguages][numLetters + 1];
+            this.overlaps = new long[numLanguages][numLanguages];
+        }
+
+        private void add(WordAndLanguage wordAndLanguage, int[] letterIndices) {
+            String word = wordAndLanguage.getWord();
+            BitSet languageIndices = wordAndLanguage.getLanguageIndices();
+            int length = word.length();
+            if (length >= lengthCounts.length) {
+                lengthCounts = Arrays.copyOf(lengthCounts, Math.max(length + 1, lengthCounts.length * 2));
+            }
+            lengthCounts[length]++;
+            for (int i = languageIndices.nextSetBit(0); i >= 0; i = languageIndices.nextSetBit(i + 1)) {
+                for (int j = languageIndices.nextSetBit(0); j >= 0; j = languageIndices.nextSetBit(j + 1)) {
+                    overlaps[i][j]++;
+                }
+                long[] counts = letterCounts[i];
+                for (int c = 0; c < length; c++) {
+                    counts[letterIndices[word.charAt(c)]]++;
+                }
+            }
+        }
+
+        private void merge(Accumulator other) {
+            if (other.lengthCounts.length > lengthCounts.length) {
+                lengthCounts = Arrays.copyOf(lengthCounts, other.lengthCounts.length);
+            }
+            for (int i = 0; i < other.lengthCounts.length; i++) {
+                lengthCounts[i] += other.lengthCounts[i];
+            }
+            for (int i = 0; i < overlaps.length; i++) {
+                for (int j = 0; j < overlaps.length; j++) {
+                    overlaps[i][j] += other.overlaps[i][j];
+                }
+                for (int j = 0; j < letterCounts[i].length; j++) {
+                    letterCounts[i][j] += other.letterCounts[i][j];
+                }
+            }
+        }
+    }
+}
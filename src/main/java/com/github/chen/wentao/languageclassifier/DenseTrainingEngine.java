@@ -0,0 +1,53 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.mllib.training.BatchFullDataSetStream;
+import com.github.chen.wentao.mllib.training.FullDataSet;
+import com.github.chen.wentao.mllib.training.StaticFullDataSetStream;
+
+final class DenseTrainingEngine implements TrainingEngine {
+
+    private final LanguageClassifier languageClassifier;
+    private final BatchFullDataSetStream batchGenerator;
+    private final double alpha;
+    private final double lambda;
+
+    DenseTrainingEngine(LanguageClassifier languageClassifier, LanguageWordsDataSet dataSet, TrainingOptions options, BatchSchedule schedule) {
+        this.languageClassifier = languageClassifier;
+        this.batchGenerator = dataSet.buildDataSetGenerator(languageClassifier.getFeatureExtractor(), schedule);
+        this.alpha = options.getAlpha();
+        this.lambda = options.getLambda();
+    }
+
+    @Override
+    public void train(int fromIteration, int toIteration) {
+        if (toIteration <= fromIteration) {
+            return;
+        }
+        BatchFullDataSetStream offsetGenerator = new StaticFullDataSetStream(toIteration - fromIteration) {
+            @Override
+            public FullDataSet getBatch(int batchIndex) {
+                return batchGenerator.getBatch(fromIteration + batchIndex);
+            }
+        };
+        languageClassifier.trainNetwork(offsetGenerator, alpha, lambda, toIteration - fromIteration);
+    }
+
+    @Override
+    public double cost(LanguageWordsDataSet dataSet) {
+        return languageClassifier.cost(0, dataSet);
+    }
+
+    @Override
+    public NetworkWeights snapshot() {
+        return languageClassifier.getNetworkWeights();
+    }
+
+    @Override
+    public void restore(NetworkWeights weights) {
+        languageClassifier.setNetworkWeights(weights);
+    }
+
+    @Override
+    public void sync() {
+    }
+}
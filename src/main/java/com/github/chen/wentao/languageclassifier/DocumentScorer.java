@@ -0,0 +1,130 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores a document incrementally as chunks of text arrive. Words are separated by whitespace and may span chunk
+ * boundaries; only the encodable prefix of the word being read is buffered, so state stays bounded by the number of
+ * languages and the classifier's max word length. Not thread safe.
+ */
+public class DocumentScorer {
+
+    private final LanguageClassifier languageClassifier;
+    private final Language[] languages;
+    private final double[] logLikelihoods;
+    private final char[] pendingWord;
+    private int pendingLength = 0;
+    private boolean inWord = false;
+    private int wordCount = 0;
+
+    DocumentScorer(LanguageClassifier languageClassifier) {
+        this.languageClassifier = languageClassifier;
+        this.languages = languageClassifier.getLanguages();
+        this.logLikelihoods = new double[languages.length];
+        this.pendingWord = new char[languageClassifier.getMaxWordLength()];
+    }
+
+    public DocumentScorer accept(CharSequence chunk) {
+        for (int i = 0, n = chunk.length(); i < n; i++) {
+            accept(chunk.charAt(i));
+        }
+        return this;
+    }
+
+    public DocumentScorer accept(char[] buffer, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(buffer[i]);
+        }
+        return this;
+    }
+
+    public DocumentScorer acceptLine(CharSequence line) {
+        accept(line);
+        endWord();
+        return this;
+    }
+
+    public DocumentScorer consume(Reader reader) throws IOException {
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            accept(buffer, 0, read);
+        }
+        return this;
+    }
+
+    public DocumentScorer finish() {
+        endWord();
+        return this;
+    }
+
+    private void accept(char character) {
+        if (Character.isWhitespace(character)) {
+            endWord();
+            return;
+        }
+        inWord = true;
+        char lowerCase = Character.toLowerCase(character);
+        if (pendingLength < pendingWord.length && languageClassifier.getLetterEncoder().applyAsInt(lowerCase) >= 0) {
+            pendingWord[pendingLength++] = lowerCase;
+        }
+    }
+
+    private void endWord() {
+        if (!inWord) {
+            return;
+        }
+        double[] outputs = languageClassifier.processOutputs(new String(pendingWord, 0, pendingLength));
+        for (int i = 0; i < languages.length; i++) {
+            logLikelihoods[i] += Math.log(Math.max(outputs[i], LanguageClassifier.MIN_PROBABILITY));
+        }
+        wordCount++;
+        pendingLength = 0;
+        inWord = false;
+    }
+
+    public Map<Language, Double> getScores() {
+        Map<Language, Double> scores = new HashMap<>();
+        for (int i = 0; i < languages.length; i++) {
+            scores.put(languages[i], wordCount > 0 ? Math.exp(logLikelihoods[i] / wordCount) : 1.0);
+        }
+        return scores;
+    }
+
+    public List<Language> getRanking() {
+        Map<Language, Double> scores = getScores();
+        List<Language> ranking = new ArrayList<>(scores.keySet());
+        ranking.sort(Comparator.comparingDouble(scores::get).reversed());
+        return ranking;
+    }
+
+    public Language getPrediction() {
+        int best = 0;
+        for (int i = 1; i < languages.length; i++) {
+            if (logLikelihoods[i] > logLikelihoods[best]) {
+                best = i;
+            }
+        }
+        return languages[best];
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public void reset() {
+        Arrays.fill(logLikelihoods, 0);
+        pendingLength = 0;
+        inWord = false;
+        wordCount = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.chen.wentao.languageclassifier;
+
+/**
+ * Double precision counterpart of {@link InferenceKernel} for {@link LanguageClassifier}, so its outputs agree with the
+ * network's cost and the probabilities it was trained on. The reduced precision kernels stay with
+ * {@link QuantizedLanguageClassifier}.
+ */
+final class DoubleInferenceKernel {
+
+    private final int hiddenUnits;
+    private final int outputs;
+    // (inputs + 1) x hiddenUnits, row 0 holds the hidden biases
+    private final double[] firstLayer;
+    // (hiddenUnits + 1) x outputs, row 0 holds the output biases
+    private final double[] secondLayerTransposed;
+
+    DoubleInferenceKernel(NetworkWeights weights) {
+        if (weights.numLayers() != 2) throw new IllegalStateException("Only single hidden layer networks are supported. Layers: " + weights.numLayers());
+        this.hiddenUnits = weights.rows(0);
+        this.outputs = weights.rows(1);
+        int inputRows = weights.cols(0);
+        double[] first = weights.layer(0);
+        this.firstLayer = new double[inputRows * hiddenUnits];
+        for (int j = 0; j < hiddenUnits; j++) {
+            for (int col = 0; col < inputRows; col++) {
+                firstLayer[col * hiddenUnits + j] = first[j * inputRows + col];
+            }
+        }
+        double[] second = weights.layer(1);
+        this.secondLayerTransposed = new double[(hiddenUnits + 1) * outputs];
+        for (int i = 0; i < outputs; i++) {
+            for (int j = 0; j <= hiddenUnits; j++) {
+                secondLayerTransposed[j * outputs + i] = second[i * (hiddenUnits + 1) + j];
+            }
+        }
+    }
+
+    /**
+     * @param columns active input columns, only the first {@code count} are read
+     * @param hidden  scratch space of at least the number of hidden units
+     * @param output  receives one activation per output unit
+     */
+    void forward(int[] columns, int count, double[] hidden, double[] output) {
+        System.arraycopy(firstLayer, 0, hidden, 0, hiddenUnits);
+        for (int k = 0; k < count; k++) {
+            int base = (columns[k] + 1) * hiddenUnits;
+            for (int j = 0; j < hiddenUnits; j++) {
+                hidden[j] += firstLayer[base + j];
+            }
+        }
+        System.arraycopy(secondLayerTransposed, 0, output, 0, outputs);
+        for (int j = 0; j < hiddenUnits; j++) {
+            double activation = sigmoid(hidden[j]);
+            int base = (j + 1) * outputs;
+            for (int i = 0; i < outputs; i++) {
+                output[i] += secondLayerTransposed[base + i] * activation;
+            }
+        }
+        for (int i = 0; i < outputs; i++) {
+            output[i] = sigmoid(output[i]);
+        }
+    }
+
+    private static double sigmoid(double z) {
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.chen.wentao.languageclassifier;
+
+public class EarlyStopping {
+
+    private final LanguageWordsDataSet cvDataSet;
+    private final int evaluateEvery;
+    private final int patience;
+    private final double minImprovement;
+
+    public EarlyStopping(LanguageWordsDataSet cvDataSet, int evaluateEvery, int patience) {
+        this(cvDataSet, evaluateEvery, patience, 0);
+    }
+
+    /**
+     * @param evaluateEvery  number of batches between evaluations of the cross validation cost
+     * @param patience       number of consecutive evaluations without improvement before training stops
+     * @param minImprovement decrease in cost required for an evaluation to count as an improvement
+     */
+    public EarlyStopping(LanguageWordsDataSet cvDataSet, int evaluateEvery, int patience, double minImprovement) {
+        if (cvDataSet == null) throw new IllegalArgumentException("cross validation data set cannot be null");
+        if (evaluateEvery <= 0) throw new IllegalArgumentException(String.format("evaluation interval (%d) must be greater than 0", evaluateEvery));
+        if (patience <= 0) throw new IllegalArgumentException(String.format("patience (%d) must be greater than 0", patience));
+        if (minImprovement < 0) throw new IllegalArgumentException(String.format("minimum improvement (%f) cannot be less than 0", minImprovement));
+        this.cvDataSet = cvDataSet;
+        this.evaluateEvery = evaluateEvery;
+        this.patience = patience;
+        this.minImprovement = minImprovement;
+    }
+
+    public LanguageWordsDataSet getCvDataSet() {
+        return cvDataSet;
+    }
+
+    public int getEvaluateEvery() {
+        return evaluateEvery;
+    }
+
+    public int getPatience() {
+        return patience;
+    }
+
+    public double getMinImprovement() {
+        return minImprovement;
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.chen.wentao.languageclassifier;
+
+/**
+ * A whole data set encoded once in compressed sparse row form. Batches are views into the shared arrays, so any number
+ * of trainers with the same encoding can read it concurrently without encoding the words again.
+ */
+final class EncodedDataSet {
+
+    private final int rows;
+    private final int outputs;
+    private final int[] rowStarts;
+    private final int[] columns;
+    private final boolean[] targets;
+
+    EncodedDataSet(int rows, int outputs, int[] rowStarts, int[] columns, boolean[] targets) {
+        this.rows = rows;
+        this.outputs = outputs;
+        this.rowStarts = rowStarts;
+        this.columns = columns;
+        this.targets = targets;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * Same batch order as {@link LanguageWordsDataSet#buildSparseBatchGenerator}.
+     */
+    SparseBatchStream batches(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException(String.format("batch size (%d) must be greater than 0", batchSize));
+        int batchCount = (rows - 1) / batchSize + 1;
+        return new SparseBatchStream() {
+            @Override
+            public int numBatches() {
+                return batchCount;
+            }
+
+            @Override
+            public SparseBatch getBatch(int batchIndex) {
+                int batchStart = batchIndex % batchCount * batchSize;
+                int batchEnd = Math.min(batchStart + batchSize, rows);
+                return new SparseBatch(batchStart, batchEnd - batchStart, outputs, rowStarts, columns, targets);
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.io.Serializable;
+
+/**
+ * Turns a word into the input of a classifier's network. Inputs are binary, so a word is given by its distinct active
+ * columns, at most {@link #maxActiveFeatures()} of them, which every training and inference path consumes directly.
+ */
+public interface FeatureExtractor extends Serializable {
+
+    /**
+     * Number of network inputs
+     */
+    int numFeatures();
+
+    /**
+     * Upper bound on the number of columns {@link #extract} writes for one word
+     */
+    int maxActiveFeatures();
+
+    /**
+     * Length of the longest word prefix that affects the features
+     */
+    int maxWordLength();
+
+    /**
+     * Writes the distinct active columns of a word to {@code columns} starting at {@code offset}
+     *
+     * @return the number of columns written
+     */
+    int extract(String word, int[] columns, int offset);
+
+    /**
+     * The same kind of features for words up to a different length
+     */
+    FeatureExtractor withMaxWordLength(int maxWordLength);
+
+    /**
+     * One-hot encoding of each letter position, {@code (inputLettersCount + 1) * maxWordLength} inputs
+     */
+    static FeatureExtractor positional(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder) {
+        return new PositionalFeatureExtractor(inputLettersCount, maxWordLength, letterEncoder);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.Arrays;
+
+/**
+ * Character n-grams of a word, including its start and end boundaries, hashed into a fixed number of inputs. The input
+ * size does not depend on the alphabet or word length, and a word activates at most one input per n-gram.
+ */
+public final class HashedNGramFeatureExtractor implements FeatureExtractor {
+
+    private static final long serialVersionUID = 2514302447769235129L;
+    private static final int BOUNDARY = -1;
+
+    private final int numFeatures;
+    private final int minN;
+    private final int maxN;
+    private final int maxWordLength;
+
+    /**
+     * @param numFeatures   number of hash buckets, the network's input size
+     * @param minN          shortest n-gram
+     * @param maxN          longest n-gram
+     * @param maxWordLength letters of a word beyond this are ignored, bounding the cost of a word
+     */
+    public HashedNGramFeatureExtractor(int numFeatures, int minN, int maxN, int maxWordLength) {
+        if (numFeatures <= 0) throw new IllegalArgumentException(String.format("number of features (%d) must be greater than 0", numFeatures));
+        if (minN <= 0 || maxN < minN) throw new IllegalArgumentException(String.format("n-gram range (%d, %d) must satisfy 0 < min <= max", minN, maxN));
+        if (maxWordLength <= 0) throw new IllegalArgumentException(String.format("max word length (%d) must be greater than 0", maxWordLength));
+        this.numFeatures = numFeatures;
+        this.minN = minN;
+        this.maxN = maxN;
+        this.maxWordLength = maxWordLength;
+    }
+
+    @Override
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    @Override
+    public int maxActiveFeatures() {
+        int count = 0;
+        // The word with both boundaries is at most maxWordLength + 2 symbols long
+        for (int n = minN; n <= maxN; n++) {
+            count += Math.max(0, maxWordLength + 3 - n);
+        }
+        return Math.max(count, 1);
+    }
+
+    @Override
+    public int maxWordLength() {
+        return maxWordLength;
+    }
+
+    @Override
+    public int extract(String word, int[] columns, int offset) {
+        int symbols = Math.min(word.length(), maxWordLength) + 2;
+        int count = 0;
+        for (int n = minN; n <= maxN; n++) {
+            for (int start = 0; start + n <= symbols; start++) {
+                int hash = n;
+                for (int i = start; i < start + n; i++) {
+                    hash = hash * 31 + symbol(word, i, symbols);
+                }
+                columns[offset + count++] = Math.floorMod(mix(hash), numFeatures);
+            }
+        }
+        // Inputs are binary, so n-grams repeated in the word or colliding in a bucket count once
+        Arrays.sort(columns, offset, offset + count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || columns[offset + i] != columns[offset + distinct - 1]) {
+                columns[offset + distinct++] = columns[offset + i];
+            }
+        }
+        return distinct;
+    }
+
+    private static int symbol(String word, int index, int symbols) {
+        return index == 0 || index == symbols - 1 ? BOUNDARY : word.charAt(index - 1);
+    }
+
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public FeatureExtractor withMaxWordLength(int maxWordLength) {
+        return new HashedNGramFeatureExtractor(numFeatures, minN, maxN, maxWordLength);
+    }
+
+    public int getMinN() {
+        return minN;
+    }
+
+    public int getMaxN() {
+        return maxN;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HashedNGramFeatureExtractor)) return false;
+        HashedNGramFeatureExtractor that = (HashedNGramFeatureExtractor) o;
+        return numFeatures == that.numFeatures && minN == that.minN && maxN == that.maxN && maxWordLength == that.maxWordLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((numFeatures * 31 + minN) * 31 + maxN) * 31 + maxWordLength;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hashed %d-%d-grams (%d features, max word length %d)", minN, maxN, numFeatures, maxWordLength);
+    }
+}
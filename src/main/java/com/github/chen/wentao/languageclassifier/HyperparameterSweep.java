@@ -0,0 +1,192 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+public class HyperparameterSweep {
+
+    private static final Logger LOGGER = Logger.getLogger(HyperparameterSweep.class.getName());
+
+    private HyperparameterSweep() {
+    }
+
+    /**
+     * Trains one classifier per candidate on a pool of {@code threads} threads and scores each on the cross validation
+     * data set. Words are encoded once per distinct max word length and shared by every candidate using it. Each
+     * candidate's initial weights come from a seed drawn from {@code random} in candidate order, so the results do not
+     * depend on scheduling. Trained classifiers are not kept; {@link #retrain} rebuilds the one of a result.
+     *
+     * @return results ordered from lowest to highest cross validation cost
+     */
+    public static List<Result> run(LanguageClassifier template, LanguageWordsDataSet trainingDataSet, LanguageWordsDataSet cvDataSet,
+                                   List<Candidate> candidates, int numIterations, TrainingPrecision precision, int threads, Random random) {
+        if (numIterations <= 0) throw new IllegalArgumentException(String.format("number of iterations (%d) must be greater than 0", numIterations));
+        if (threads <= 0) throw new IllegalArgumentException(String.format("number of threads (%d) must be greater than 0", threads));
+        FeatureExtractor featureExtractor = template.getFeatureExtractor();
+        Map<Integer, EncodedDataSet> trainingEncodings = new HashMap<>();
+        Map<Integer, EncodedDataSet> cvEncodings = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            int maxWordLength = candidate.getMaxWordLength();
+            trainingEncodings.computeIfAbsent(maxWordLength, length -> trainingDataSet.encode(featureExtractor.withMaxWordLength(length)));
+            cvEncodings.computeIfAbsent(maxWordLength, length -> cvDataSet.encode(featureExtractor.withMaxWordLength(length)));
+        }
+
+        List<Callable<Result>> tasks = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            long seed = random.nextLong();
+            EncodedDataSet trainingEncoding = trainingEncodings.get(candidate.getMaxWordLength());
+            EncodedDataSet cvEncoding = cvEncodings.get(candidate.getMaxWordLength());
+            tasks.add(() -> train(template, trainingDataSet, cvDataSet, trainingEncoding, cvEncoding, candidate, numIterations, precision, seed));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Result> results = new ArrayList<>(candidates.size());
+        try {
+            for (Future<Result> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        results.sort(Comparator.comparingDouble(Result::getCvCost));
+        return results;
+    }
+
+    /**
+     * Trains the classifier of a result again, with the same initial weights and batches, so it is identical to the one
+     * that was scored
+     */
+    public static LanguageClassifier retrain(LanguageClassifier template, LanguageWordsDataSet trainingDataSet, Result result, int numIterations,
+                                             TrainingPrecision precision) {
+        Candidate candidate = result.getCandidate();
+        EncodedDataSet trainingEncoding = trainingDataSet.encode(template.getFeatureExtractor().withMaxWordLength(candidate.getMaxWordLength()));
+        LanguageClassifier languageClassifier = newUntrained(template, trainingDataSet, candidate, result.getSeed());
+        NetworkTrainer trainer = trainNetwork(languageClassifier, trainingEncoding, candidate, numIterations, precision);
+        languageClassifier.setNetworkWeights(trainer.toWeights());
+        return languageClassifier;
+    }
+
+    private static Result train(LanguageClassifier template, LanguageWordsDataSet trainingDataSet, LanguageWordsDataSet cvDataSet,
+                                EncodedDataSet trainingEncoding, EncodedDataSet cvEncoding, Candidate candidate, int numIterations,
+                                TrainingPrecision precision, long seed) {
+        LanguageClassifier languageClassifier = newUntrained(template, trainingDataSet, candidate, seed);
+        long startTime = System.nanoTime();
+        NetworkTrainer trainer = trainNetwork(languageClassifier, trainingEncoding, candidate, numIterations, precision);
+        long trainingNanos = System.nanoTime() - startTime;
+        double cvCost = trainer.cost(cvEncoding.batches(1000), 0);
+        languageClassifier.setNetworkWeights(trainer.toWeights());
+        double accuracy = languageClassifier.accuracy(cvDataSet.numWords(), cvDataSet);
+        LOGGER.fine(() -> String.format("%s: cv cost %.10f, accuracy %.4f", candidate, cvCost, accuracy));
+        return new Result(candidate, seed, cvCost, accuracy, trainingNanos);
+    }
+
+    private static LanguageClassifier newUntrained(LanguageClassifier template, LanguageWordsDataSet trainingDataSet, Candidate candidate, long seed) {
+        return template.newUntrained(template.getFeatureExtractor().withMaxWordLength(candidate.getMaxWordLength()), new Random(seed), trainingDataSet);
+    }
+
+    private static NetworkTrainer trainNetwork(LanguageClassifier languageClassifier, EncodedDataSet trainingEncoding, Candidate candidate,
+                                               int numIterations, TrainingPrecision precision) {
+        SparseBatchStream batches = trainingEncoding.batches(candidate.getBatchSize());
+        NetworkTrainer trainer = NetworkTrainer.create(languageClassifier.getNetworkWeights(), precision);
+        for (int batchIndex = 0; batchIndex < numIterations; batchIndex++) {
+            trainer.trainBatch(batches.getBatch(batchIndex), candidate.getAlpha(), candidate.getLambda());
+        }
+        return trainer;
+    }
+
+    public static class Candidate {
+        private final double alpha;
+        private final double lambda;
+        private final int batchSize;
+        private final int maxWordLength;
+
+        public Candidate(double alpha, double lambda, int batchSize, int maxWordLength) {
+            if (alpha <= 0) throw new IllegalArgumentException(String.format("learning rate (%f) must be greater than 0", alpha));
+            if (lambda < 0) throw new IllegalArgumentException(String.format("regularization parameter (%f) cannot be less than 0", lambda));
+            if (batchSize <= 0) throw new IllegalArgumentException(String.format("batch size (%d) must be greater than 0", batchSize));
+            if (maxWordLength <= 0) throw new IllegalArgumentException(String.format("max word length (%d) must be greater than 0", maxWordLength));
+            this.alpha = alpha;
+            this.lambda = lambda;
+            this.batchSize = batchSize;
+            this.maxWordLength = maxWordLength;
+        }
+
+        public double getAlpha() {
+            return alpha;
+        }
+
+        public double getLambda() {
+            return lambda;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public int getMaxWordLength() {
+            return maxWordLength;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("alpha=%s lambda=%s batch=%d length=%d", alpha, lambda, batchSize, maxWordLength);
+        }
+    }
+
+    public static class Result {
+        private final Candidate candidate;
+        private final long seed;
+        private final double cvCost;
+        private final double accuracy;
+        private final long trainingNanos;
+
+        private Result(Candidate candidate, long seed, double cvCost, double accuracy, long trainingNanos) {
+            this.candidate = candidate;
+            this.seed = seed;
+            this.cvCost = cvCost;
+            this.accuracy = accuracy;
+            this.trainingNanos = trainingNanos;
+        }
+
+        public Candidate getCandidate() {
+            return candidate;
+        }
+
+        /**
+         * Seed of the candidate's initial weights
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        public double getCvCost() {
+            return cvCost;
+        }
+
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        public long getTrainingNanos() {
+            return trainingNanos;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+public class InferenceBenchmark {
+
+    private InferenceBenchmark() {
+    }
+
+    /**
+     * Measures the time from the start of loading a classifier until it has made each power of ten of predictions, up
+     * to {@code predictions}, optionally warming it up first. Each point reports the elapsed time and the throughput
+     * since the previous point, which shows how long inference runs below its steady state speed.
+     */
+    public static List<StartupPoint> startup(Supplier<LanguageClassifier> loader, int predictions, boolean warmUp, Random random) {
+        if (predictions <= 0) throw new IllegalArgumentException(String.format("number of predictions (%d) must be greater than 0", predictions));
+        long startTime = System.nanoTime();
+        LanguageClassifier languageClassifier = loader.get();
+        List<StartupPoint> points = new ArrayList<>();
+        points.add(new StartupPoint("loaded", 0, System.nanoTime() - startTime, 0));
+        if (warmUp) {
+            ModelWarmup.warmUp(languageClassifier, random);
+            points.add(new StartupPoint("warmed up", 0, System.nanoTime() - startTime, 0));
+        }
+        List<String> words = ModelWarmup.syntheticWords(languageClassifier, 10000, random);
+        int next = 1000;
+        long previousNanos = System.nanoTime() - startTime;
+        int previousCount = 0;
+        for (int count = 1; count <= predictions; count++) {
+            languageClassifier.predictIndex(words.get(count % words.size()));
+            if (count == next || count == predictions) {
+                long nanos = System.nanoTime() - startTime;
+                points.add(new StartupPoint(count + " predictions", count, nanos, (count - previousCount) * 1000000000.0 / (nanos - previousNanos)));
+                previousNanos = nanos;
+                previousCount = count;
+                next *= 10;
+            }
+        }
+        return points;
+    }
+
+    public static class StartupPoint {
+        private final String label;
+        private final int predictions;
+        private final long nanos;
+        private final double predictionsPerSecond;
+
+        private StartupPoint(String label, int predictions, long nanos, double predictionsPerSecond) {
+            this.label = label;
+            this.predictions = predictions;
+            this.nanos = nanos;
+            this.predictionsPerSecond = predictionsPerSecond;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getPredictions() {
+            return predictions;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return throughput since the previous point, 0 for points without predictions
+         */
+        public double getPredictionsPerSecond() {
+            return predictionsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.lang.reflect.Constructor;
+import java.util.logging.Logger;
+
+/**
+ * Forward pass for the single hidden layer, sigmoid activated network used by the classifiers, specialised for one-hot
+ * input given as the list of active input columns.
+ */
+interface InferenceKernel {
+
+    String KERNEL_PROPERTY = "languageclassifier.kernel";
+    String VECTOR_KERNEL_CLASS = "com.github.chen.wentao.languageclassifier.VectorInferenceKernel";
+
+    /**
+     * @param columns active input columns, only the first {@code count} are read
+     * @param hidden  scratch space of at least the number of hidden units
+     * @param output  receives one activation per output unit
+     */
+    void forward(int[] columns, int count, float[] hidden, float[] output);
+
+    String getName();
+
+    /**
+     * @param firstLayer  (inputs + 1) x hiddenUnits, row 0 holds the hidden biases
+     * @param secondLayer outputs x (hiddenUnits + 1), column 0 holds the output biases
+     */
+    static InferenceKernel create(int hiddenUnits, int outputs, float[] firstLayer, float[] secondLayer) {
+        if (!"scalar".equals(System.getProperty(KERNEL_PROPERTY))) {
+            try {
+                // Only present in the Java 17+ variant of the multi-release jar, and only usable when the
+                // jdk.incubator.vector module is resolved
+                Constructor<?> constructor = Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor(int.class, int.class, float[].class, float[].class);
+                return (InferenceKernel) constructor.newInstance(hiddenUnits, outputs, firstLayer, secondLayer);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Logger.getLogger(InferenceKernel.class.getName()).fine(() -> "Vector API kernel unavailable, using scalar kernel: " + e);
+            }
+        }
+        return new ScalarInferenceKernel(hiddenUnits, outputs, firstLayer, secondLayer);
+    }
+}
@@ -34,66 +34,188 @@ public class LanguageClassifier implements Serializable {
     private static final long serialVersionUID = -7603513701132703287L;
 
     private static final Logger LOGGER = Logger.getLogger(LanguageClassifier.class.getName());
+    static final double MIN_PROBABILITY = 1e-12;
 
     private final int inputLettersCount;
     private final int maxWordLength;
     private final LetterEncoder letterEncoder;
     private final Language[] languages;
-    private transient NeuralNetwork network;
+    // Rebuilt from the weights copy when ml-lib next needs it, null after the weights were set
+    private transient volatile NeuralNetwork network;
+    // Copy of the network's weights when they are known without reading them out of ml-lib, null after dense training
+    private transient volatile NetworkWeights weights;
+    // Built from the weights copy on first use and dropped whenever the weights change
+    private transient volatile DoubleInferenceKernel kernel;
     private final LanguageWordsDataSet allWordsDataSet;
+    // Not final so classifiers saved before feature extractors existed get the positional encoding when read
+    private FeatureExtractor featureExtractor;
+    private int hiddenUnits;
 
     public LanguageClassifier(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, Random random, Language... languages) {
         this(inputLettersCount, maxWordLength, letterEncoder, random, new LanguageWordsDataSet(random, languages), languages);
     }
 
     public LanguageClassifier(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, Random random, LanguageWordsDataSet allWordsDataSet, Language... languages) {
+        this(FeatureExtractor.positional(inputLettersCount, maxWordLength, letterEncoder), inputLettersCount + 1, inputLettersCount, letterEncoder, random, allWordsDataSet, languages);
+    }
+
+    /**
+     * Classifier reading words through the given features instead of one-hot letter positions. The languages' letters
+     * are still used to decide which characters of a text are part of words.
+     */
+    public LanguageClassifier(FeatureExtractor featureExtractor, int hiddenUnits, Random random, LanguageWordsDataSet allWordsDataSet, Language... languages) {
+        this(featureExtractor, hiddenUnits, Language.countDistinctLetters(languages), LetterEncoder.fromLanguages(languages), random, allWordsDataSet, languages);
+    }
+
+    /**
+     * @param inputLettersCount number of letters the letter encoder maps to
+     */
+    public LanguageClassifier(FeatureExtractor featureExtractor, int hiddenUnits, int inputLettersCount, LetterEncoder letterEncoder, Random random,
+                              LanguageWordsDataSet allWordsDataSet, Language... languages) {
         if (inputLettersCount <= 0) throw new IllegalArgumentException("There must be at least 1 letter of input. Given: (" + inputLettersCount + ")");
+        if (hiddenUnits <= 0) throw new IllegalArgumentException("There must be at least 1 hidden unit. Given: (" + hiddenUnits + ")");
         if (letterEncoder == null) throw new IllegalArgumentException("letter encoder cannot be null");
         if (languages.length <= 0) throw new IllegalArgumentException("There must be at least 1 language.");
         this.inputLettersCount = inputLettersCount;
-        this.maxWordLength = maxWordLength;
+        this.maxWordLength = featureExtractor.maxWordLength();
         this.letterEncoder = letterEncoder;
         this.languages = languages;
-        this.network = NeuralNetwork.emptyNetwork((inputLettersCount + 1) * maxWordLength, inputLettersCount + 1, languages.length);
+        this.featureExtractor = featureExtractor;
+        this.hiddenUnits = hiddenUnits;
+        this.network = NeuralNetwork.emptyNetwork(featureExtractor.numFeatures(), hiddenUnits, languages.length);
         this.network.randomlyInitialize(random);
         this.allWordsDataSet = allWordsDataSet;
     }
 
+    /**
+     * A randomly initialized classifier with the same letters, hidden units and kind of features, reading words through
+     * the given extractor
+     */
+    public LanguageClassifier newUntrained(FeatureExtractor featureExtractor, Random random, LanguageWordsDataSet allWordsDataSet) {
+        return new LanguageClassifier(featureExtractor, hiddenUnits, inputLettersCount, letterEncoder, random, allWordsDataSet, languages);
+    }
+
     public static Supplier<LanguageClassifier> getLanguageRecognizerGenerator(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, Random random, Language... languages) {
         LanguageWordsDataSet dataSet = new LanguageWordsDataSet(random, languages);
         return () -> new LanguageClassifier(inputLettersCount, maxWordLength, letterEncoder, random, dataSet, languages);
     }
 
     public Map<Language, Double> process(String input) {
-        double[] data = new double[this.network.numInputs()];
-        allWordsDataSet.setDataToArray(inputLettersCount, maxWordLength, letterEncoder, input, data);
+        double[] output = processOutputs(input);
+        Map<Language, Double> results = new HashMap<>();
+        for (int i = 0; i < languages.length; i++) {
+            results.put(languages[i], output[i]);
+        }
+        return results;
+    }
+
+    double[] processOutputs(String input) {
+        DoubleInferenceKernel kernel = getKernel();
+        if (kernel == null) {
+            return referenceOutputs(input);
+        }
+        int[] columns = new int[featureExtractor.maxActiveFeatures()];
+        int count = featureExtractor.extract(input, columns, 0);
+        double[] outputs = new double[languages.length];
+        kernel.forward(columns, count, new double[hiddenUnits], outputs);
+        return outputs;
+    }
+
+    /**
+     * Outputs of the network itself, the reference that reduced precision inference is compared against
+     */
+    double[] referenceOutputs(String input) {
+        NeuralNetwork network = network();
+        double[] data = new double[network.numInputs()];
+        LanguageWordsDataSet.setDataToArray(featureExtractor, input, data);
         DataSet dataSet = DataSet.single(data);
-        SimpleMatrix[] result = this.network.feedForward(dataSet);
+        SimpleMatrix[] result = network.feedForward(dataSet);
         SimpleMatrix output = result[result.length - 1];
-        Map<Language, Double> results = new HashMap<>();
+        double[] outputs = new double[languages.length];
         for (int i = 0; i < languages.length; i++) {
-            results.put(languages[i], output.get(i, 0));
+            outputs[i] = output.get(i, 0);
+        }
+        return outputs;
+    }
+
+    public List<Map<Language, Double>> processBatch(List<String> inputs) {
+        double[][] outputs = processOutputs(inputs);
+        List<Map<Language, Double>> results = new ArrayList<>(inputs.size());
+        for (double[] output : outputs) {
+            Map<Language, Double> scores = new HashMap<>();
+            for (int i = 0; i < languages.length; i++) {
+                scores.put(languages[i], output[i]);
+            }
+            results.add(scores);
         }
         return results;
     }
 
+    double[][] processOutputs(List<String> inputs) {
+        double[][] outputs = new double[inputs.size()][languages.length];
+        if (inputs.isEmpty()) {
+            return outputs;
+        }
+        DoubleInferenceKernel kernel = getKernel();
+        if (kernel == null) {
+            for (int row = 0; row < inputs.size(); row++) {
+                outputs[row] = referenceOutputs(inputs.get(row));
+            }
+            return outputs;
+        }
+        int[] columns = new int[featureExtractor.maxActiveFeatures()];
+        double[] hidden = new double[hiddenUnits];
+        for (int row = 0; row < inputs.size(); row++) {
+            int count = featureExtractor.extract(inputs.get(row), columns, 0);
+            kernel.forward(columns, count, hidden, outputs[row]);
+        }
+        return outputs;
+    }
+
+    /**
+     * @return the inference kernel, or null while the weights are only held by the network, since reading them out of
+     * ml-lib costs a round trip through files
+     */
+    private DoubleInferenceKernel getKernel() {
+        DoubleInferenceKernel kernel = this.kernel;
+        if (kernel == null) {
+            NetworkWeights weights = this.weights;
+            if (weights == null) {
+                return null;
+            }
+            kernel = new DoubleInferenceKernel(weights);
+            this.kernel = kernel;
+        }
+        return kernel;
+    }
+
     public Map<Language, Double> processParagraph(String paragraph) {
         return processParagraph(paragraph.split(" "));
     }
 
     public Map<Language, Double> processParagraph(String[] words) {
+        return combineWordScores(processWords(Arrays.asList(words)));
+    }
+
+    /**
+     * Scores raw words, dropping the characters that are not letters of the languages the same way
+     * {@link #processParagraph(String[])} does
+     */
+    public List<Map<Language, Double>> processWords(List<String> words) {
+        List<String> inputs = new ArrayList<>(words.size());
+        for (String word : words) {
+            inputs.add(toEncodableWord(word));
+        }
+        return processBatch(inputs);
+    }
+
+    /**
+     * Geometric mean of each language's scores over the words of a paragraph
+     */
+    public Map<Language, Double> combineWordScores(List<Map<Language, Double>> wordScores) {
         Map<Language, Double> score = Arrays.stream(languages).collect(Collectors.toMap(Function.identity(), l -> 1.0));
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i].toLowerCase();
-            StringBuilder input = new StringBuilder();
-            for (int c = 0; c < word.length(); c++) {
-                char character = word.charAt(c);
-                if (letterEncoder.applyAsInt(character) >= 0) {
-                    input.append(character);
-                }
-            }
-            Map<Language, Double> result = process(input.toString());
-            for (Map.Entry<Language, Double> entry : result.entrySet()) {
+        for (int i = 0; i < wordScores.size(); i++) {
+            for (Map.Entry<Language, Double> entry : wordScores.get(i).entrySet()) {
                 Language language = entry.getKey();
                 score.put(language, Math.pow(score.get(language), i / (i + 1.0)) * Math.pow(entry.getValue(), 1.0 / (i + 1)));
             }
@@ -101,20 +223,93 @@ public class LanguageClassifier implements Serializable {
         return score;
     }
 
+    public ParagraphResult processParagraph(String paragraph, double confidence, int minWords) {
+        return processParagraph(paragraph.split(" "), confidence, minWords);
+    }
+
+    public ParagraphResult processParagraph(String[] words, double confidence, int minWords) {
+        if (confidence <= 0.5 || confidence >= 1) throw new IllegalArgumentException(String.format("confidence (%f) must be between 0.5 and 1 exclusive", confidence));
+        if (minWords < 1) throw new IllegalArgumentException(String.format("minimum words (%d) must be at least 1", minWords));
+        // Sequential probability ratio test: stop once the log-likelihood ratio between the two best languages
+        // crosses the boundary matching an error rate of (1 - confidence)
+        double threshold = Math.log(confidence / (1 - confidence));
+        double[] logLikelihoods = new double[languages.length];
+        int consumed = 0;
+        double margin = 0;
+        while (consumed < words.length) {
+            double[] outputs = processOutputs(toEncodableWord(words[consumed]));
+            for (int i = 0; i < languages.length; i++) {
+                logLikelihoods[i] += Math.log(Math.max(outputs[i], MIN_PROBABILITY));
+            }
+            consumed++;
+            margin = topTwoMargin(logLikelihoods);
+            if (consumed >= minWords && margin >= threshold) {
+                break;
+            }
+        }
+        Map<Language, Double> score = new HashMap<>();
+        for (int i = 0; i < languages.length; i++) {
+            score.put(languages[i], consumed > 0 ? Math.exp(logLikelihoods[i] / consumed) : 1.0);
+        }
+        return new ParagraphResult(score, consumed, words.length, margin, consumed < words.length);
+    }
+
+    private static double topTwoMargin(double[] logLikelihoods) {
+        double best = Double.NEGATIVE_INFINITY;
+        double second = Double.NEGATIVE_INFINITY;
+        for (double logLikelihood : logLikelihoods) {
+            if (logLikelihood > best) {
+                second = best;
+                best = logLikelihood;
+            } else if (logLikelihood > second) {
+                second = logLikelihood;
+            }
+        }
+        return second == Double.NEGATIVE_INFINITY ? Double.POSITIVE_INFINITY : best - second;
+    }
+
+    public List<LanguageSegment> segment(String text, int windowSize) {
+        return new LanguageSegmenter(this, windowSize).segment(text);
+    }
+
+    public List<LanguageSegment> segment(String[] words, int windowSize) {
+        return new LanguageSegmenter(this, windowSize).segment(words);
+    }
+
+    public DocumentScorer newDocumentScorer() {
+        return new DocumentScorer(this);
+    }
+
+    String toEncodableWord(String word) {
+        word = word.toLowerCase();
+        StringBuilder input = new StringBuilder();
+        for (int c = 0; c < word.length(); c++) {
+            char character = word.charAt(c);
+            if (letterEncoder.applyAsInt(character) >= 0) {
+                input.append(character);
+            }
+        }
+        return input.toString();
+    }
+
     public Language predict(String input) {
         return languages[predictIndex(input)];
     }
 
     public int predictIndex(String input) {
-        double[] data = new double[this.network.numInputs()];
-        allWordsDataSet.setDataToArray(inputLettersCount, maxWordLength, letterEncoder, input, data);
-        DataSet dataSet = DataSet.single(data);
-        return (int) this.network.predict(dataSet).get(0);
+        double[] outputs = processOutputs(input);
+        int best = 0;
+        for (int i = 1; i < outputs.length; i++) {
+            if (outputs[i] > outputs[best]) {
+                best = i;
+            }
+        }
+        return best;
     }
 
     public List<Double> train(double alpha, double lambda, int numIterations, int batchSize) {
         List<Double> runningCost = new ArrayList<>();
-        BatchFullDataSetStream batchGenerator = allWordsDataSet.buildDataSetGenerator(inputLettersCount, maxWordLength, letterEncoder, batchSize);
+        BatchFullDataSetStream batchGenerator = allWordsDataSet.buildDataSetGenerator(featureExtractor, batchSize);
         BatchFullDataSetStream batchGeneratorWithPrint = new StaticFullDataSetStream(batchGenerator.numBatches()) {
             @Override
             public FullDataSet getBatch(int batchIndex) {
@@ -128,7 +323,7 @@ public class LanguageClassifier implements Serializable {
                 return batchGenerator.getBatch(batchIndex);
             }
         };
-        this.network.trainMiniBatch(batchGeneratorWithPrint, alpha, lambda, numIterations);
+        trainNetwork(batchGeneratorWithPrint, alpha, lambda, numIterations);
         return runningCost;
     }
 
@@ -139,7 +334,7 @@ public class LanguageClassifier implements Serializable {
     public void train(double alpha, double lambda, int numIterations, int batchSize, int preBatchEventCount, IntConsumer preBatchEvent, LanguageWordsDataSet dataSet) {
         boolean runPreBatchEvent = preBatchEventCount > 0;
         int numBatches = Math.max(numIterations / preBatchEventCount, 1);
-        BatchFullDataSetStream batchGenerator = dataSet.buildDataSetGenerator(inputLettersCount, maxWordLength, letterEncoder, batchSize);
+        BatchFullDataSetStream batchGenerator = dataSet.buildDataSetGenerator(featureExtractor, batchSize);
         BatchFullDataSetStream batchGeneratorWithPrint = new StaticFullDataSetStream(batchGenerator.numBatches()) {
             @Override
             public FullDataSet getBatch(int batchIndex) {
@@ -149,7 +344,40 @@ public class LanguageClassifier implements Serializable {
                 return batchGenerator.getBatch(batchIndex);
             }
         };
-        this.network.trainMiniBatch(batchGeneratorWithPrint, alpha, lambda, numIterations);
+        trainNetwork(batchGeneratorWithPrint, alpha, lambda, numIterations);
+    }
+
+    public void trainSparse(double alpha, double lambda, int numIterations, int batchSize, int preBatchEventCount, IntConsumer preBatchEvent, LanguageWordsDataSet dataSet) {
+        trainSparse(alpha, lambda, numIterations, batchSize, preBatchEventCount, preBatchEvent, dataSet, TrainingPrecision.DOUBLE);
+    }
+
+    public void trainSparse(double alpha, double lambda, int numIterations, int batchSize, int preBatchEventCount, IntConsumer preBatchEvent, LanguageWordsDataSet dataSet, TrainingPrecision precision) {
+        train(new TrainingOptions(alpha, numIterations)
+                .lambda(lambda)
+                .batchSize(batchSize)
+                .sparse(true)
+                .precision(precision)
+                .preBatchEvent(preBatchEventCount, preBatchEvent), dataSet);
+    }
+
+    public void train(double alpha, double lambda, int numIterations, int batchSize, int preBatchEventCount, IntConsumer preBatchEvent, LanguageWordsDataSet dataSet, TrainingPrecision precision) {
+        train(new TrainingOptions(alpha, numIterations)
+                .lambda(lambda)
+                .batchSize(batchSize)
+                .precision(precision)
+                .preBatchEvent(preBatchEventCount, preBatchEvent), dataSet);
+    }
+
+    public TrainingResult train(TrainingOptions options, LanguageWordsDataSet dataSet) {
+        return new TrainingSession(this, dataSet, options).run();
+    }
+
+    /**
+     * @param reservoirSize  number of words kept for replay, sampled uniformly from the data set and all updates
+     * @param replayPerWord  replayed words trained alongside each new word
+     */
+    public OnlineTrainer newOnlineTrainer(double alpha, double lambda, int reservoirSize, int replayPerWord, Random random) {
+        return new OnlineTrainer(this, alpha, lambda, reservoirSize, replayPerWord, random);
     }
 
     public void saveToFileBinary(String directoryName) throws IOException {
@@ -159,7 +387,10 @@ public class LanguageClassifier implements Serializable {
                 throw new IOException(directoryName);
             }
         }
-        this.network.saveToFileBinary(directoryName);
+        network().saveToFileBinary(directoryName);
+        if (this.weights == null) {
+            this.weights = NetworkWeights.readDirectory(directoryName);
+        }
         try (FileOutputStream fileOutputStream = new FileOutputStream(directoryName + "/lanrec.jobj");
              ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
             objectOutputStream.writeObject(this);
@@ -172,6 +403,7 @@ public class LanguageClassifier implements Serializable {
              ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
             languageClassifier = (LanguageClassifier) objectInputStream.readObject();
             languageClassifier.network = NeuralNetwork.loadFromFileBinary(directoryName);
+            languageClassifier.weights = NetworkWeights.readDirectory(directoryName);
         } catch (ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
@@ -192,8 +424,52 @@ public class LanguageClassifier implements Serializable {
 
     public double cost(double lambda, LanguageWordsDataSet dataSet) {
         int batchSize = 1000;
-        BatchFullDataSetStream dataSetStream = dataSet.buildDataSetGenerator(inputLettersCount, maxWordLength, letterEncoder, batchSize);
-        return network.costFunction(dataSetStream, lambda);
+        BatchFullDataSetStream dataSetStream = dataSet.buildDataSetGenerator(featureExtractor, batchSize);
+        return network().costFunction(dataSetStream, lambda);
+    }
+
+    /**
+     * Trains the network in place. Until training ends there is no weights copy, so inference from events run between
+     * batches goes through the network.
+     */
+    void trainNetwork(BatchFullDataSetStream batchGenerator, double alpha, double lambda, int numIterations) {
+        NeuralNetwork network = network();
+        this.weights = null;
+        this.kernel = null;
+        network.trainMiniBatch(batchGenerator, alpha, lambda, numIterations);
+        this.kernel = null;
+    }
+
+    /**
+     * @return the network's weights, shared and not to be modified. Reading them out of the network goes through files,
+     * which happens at most once after each dense training run.
+     */
+    NetworkWeights getNetworkWeights() {
+        NetworkWeights weights = this.weights;
+        if (weights == null) {
+            weights = NetworkWeights.read(network);
+            this.weights = weights;
+        }
+        return weights;
+    }
+
+    /**
+     * Takes the weights as they are, without copying. ml-lib has no way to write weights into an existing network, so
+     * the network is only rebuilt from them, through files, when it is next trained, costed or saved.
+     */
+    void setNetworkWeights(NetworkWeights weights) {
+        this.weights = weights;
+        this.network = null;
+        this.kernel = null;
+    }
+
+    private NeuralNetwork network() {
+        NeuralNetwork network = this.network;
+        if (network == null) {
+            network = weights.toNetwork();
+            this.network = network;
+        }
+        return network;
     }
 
     public LanguageWordsDataSet getAllWordsDataSet() {
@@ -203,13 +479,13 @@ public class LanguageClassifier implements Serializable {
     public static StreamSupervisedLearningAlgorithm<LanguageClassifier> getStreamAlgorithm(Supplier<LanguageClassifier> generator, double alpha, double lambda, int numIterations) {
         return dataSet -> {
             LanguageClassifier languageClassifier = generator.get();
-            languageClassifier.network.trainMiniBatch(dataSet, alpha, lambda, numIterations);
+            languageClassifier.trainNetwork(dataSet, alpha, lambda, numIterations);
             return languageClassifier;
         };
     }
 
     public static StreamCostFunction<LanguageClassifier> getCostFunction(double lambda) {
-        return (languageClassifier, dataSetStream) -> languageClassifier.network.costFunction(dataSetStream, lambda);
+        return (languageClassifier, dataSetStream) -> languageClassifier.network().costFunction(dataSetStream, lambda);
     }
 
     public Language[] getLanguages() {
@@ -227,4 +503,20 @@ public class LanguageClassifier implements Serializable {
     public LetterEncoder getLetterEncoder() {
         return letterEncoder;
     }
+
+    public FeatureExtractor getFeatureExtractor() {
+        return featureExtractor;
+    }
+
+    public int getHiddenUnits() {
+        return hiddenUnits;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (featureExtractor == null) {
+            featureExtractor = FeatureExtractor.positional(inputLettersCount, maxWordLength, letterEncoder);
+            hiddenUnits = inputLettersCount + 1;
+        }
+    }
 }
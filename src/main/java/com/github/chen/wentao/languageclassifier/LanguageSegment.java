@@ -0,0 +1,55 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+public class LanguageSegment {
+
+    private final Language language;
+    private final int startWord;
+    private final int endWord;
+    private final int startChar;
+    private final int endChar;
+    private final double score;
+
+    LanguageSegment(Language language, int startWord, int endWord, int startChar, int endChar, double score) {
+        this.language = language;
+        this.startWord = startWord;
+        this.endWord = endWord;
+        this.startChar = startChar;
+        this.endChar = endChar;
+        this.score = score;
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public int getStartWord() {
+        return startWord;
+    }
+
+    public int getEndWord() {
+        return endWord;
+    }
+
+    public int numWords() {
+        return endWord - startWord;
+    }
+
+    public int getStartChar() {
+        return startChar;
+    }
+
+    public int getEndChar() {
+        return endChar;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [words %d-%d, chars %d-%d, score %.4f]", language, startWord, endWord, startChar, endChar, score);
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits mixed-language text into contiguous segments. Every word is classified once, then a window of words centered
+ * on each position is scored by summing per-word log-probabilities; moving the window adds the entering word and
+ * subtracts the leaving one, so labelling is O(languages) per word regardless of the window size.
+ */
+public class LanguageSegmenter {
+
+    // Words classified per forward pass
+    private static final int CHUNK_SIZE = 1024;
+
+    private final LanguageClassifier languageClassifier;
+    private final int windowSize;
+
+    public LanguageSegmenter(LanguageClassifier languageClassifier, int windowSize) {
+        if (windowSize <= 0) throw new IllegalArgumentException(String.format("window size (%d) must be greater than 0", windowSize));
+        this.languageClassifier = languageClassifier;
+        this.windowSize = windowSize;
+    }
+
+    public List<LanguageSegment> segment(String text) {
+        List<String> words = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        int start = -1;
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            boolean boundary = i == n || Character.isWhitespace(text.charAt(i));
+            if (boundary && start >= 0) {
+                words.add(text.substring(start, i));
+                bounds.add(new int[]{start, i});
+                start = -1;
+            } else if (!boundary && start < 0) {
+                start = i;
+            }
+        }
+        int[] startChars = new int[words.size()];
+        int[] endChars = new int[words.size()];
+        for (int i = 0; i < bounds.size(); i++) {
+            startChars[i] = bounds.get(i)[0];
+            endChars[i] = bounds.get(i)[1];
+        }
+        return segment(words, startChars, endChars);
+    }
+
+    public List<LanguageSegment> segment(String[] words) {
+        int[] startChars = new int[words.length];
+        int[] endChars = new int[words.length];
+        int offset = 0;
+        for (int i = 0; i < words.length; i++) {
+            startChars[i] = offset;
+            endChars[i] = offset + words[i].length();
+            offset = endChars[i] + 1;
+        }
+        List<String> wordList = new ArrayList<>(words.length);
+        for (String word : words) {
+            wordList.add(word);
+        }
+        return segment(wordList, startChars, endChars);
+    }
+
+    private List<LanguageSegment> segment(List<String> words, int[] startChars, int[] endChars) {
+        Language[] languages = languageClassifier.getLanguages();
+        int n = words.size();
+        double[][] logProbabilities = new double[n][];
+        int[] labels = new int[n];
+        double[] windowSums = new double[languages.length];
+        int windowStart = 0;
+        int windowEnd = 0;
+        int half = windowSize / 2;
+        int labelled = 0;
+        // Words are classified a chunk at a time so the network's input matrix stays bounded however long the text,
+        // and every position whose window is complete is labelled as soon as its words are classified
+        for (int chunkStart = 0; chunkStart < n; chunkStart += CHUNK_SIZE) {
+            int chunkEnd = Math.min(n, chunkStart + CHUNK_SIZE);
+            List<String> inputs = new ArrayList<>(chunkEnd - chunkStart);
+            for (String word : words.subList(chunkStart, chunkEnd)) {
+                inputs.add(languageClassifier.toEncodableWord(word));
+            }
+            double[][] outputs = languageClassifier.processOutputs(inputs);
+            for (int i = 0; i < outputs.length; i++) {
+                for (int l = 0; l < languages.length; l++) {
+                    outputs[i][l] = Math.log(Math.max(outputs[i][l], LanguageClassifier.MIN_PROBABILITY));
+                }
+                logProbabilities[chunkStart + i] = outputs[i];
+            }
+            for (; labelled < n; labelled++) {
+                int targetStart = Math.max(0, labelled - half);
+                int targetEnd = Math.min(n, targetStart + windowSize);
+                if (targetEnd > chunkEnd) {
+                    break;
+                }
+                while (windowEnd < targetEnd) {
+                    add(windowSums, logProbabilities[windowEnd++], 1);
+                }
+                while (windowStart < targetStart) {
+                    add(windowSums, logProbabilities[windowStart++], -1);
+                }
+                labels[labelled] = argMax(windowSums);
+            }
+        }
+
+        List<LanguageSegment> segments = new ArrayList<>();
+        int segmentStart = 0;
+        double segmentLogProbability = 0;
+        for (int i = 0; i < n; i++) {
+            segmentLogProbability += logProbabilities[i][labels[i]];
+            if (i == n - 1 || labels[i + 1] != labels[i]) {
+                int count = i + 1 - segmentStart;
+                segments.add(new LanguageSegment(languages[labels[i]], segmentStart, i + 1, startChars[segmentStart], endChars[i],
+                        Math.exp(segmentLogProbability / count)));
+                segmentStart = i + 1;
+                segmentLogProbability = 0;
+            }
+        }
+        return segments;
+    }
+
+    private static void add(double[] sums, double[] values, int sign) {
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += sign * values[i];
+        }
+    }
+
+    private static int argMax(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+}
@@ -12,6 +12,7 @@ import org.ejml.simple.SimpleMatrix;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -20,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.RandomAccess;
 import java.util.function.Predicate;
 import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
@@ -29,71 +31,141 @@ public class LanguageWordsDataSet implements Serializable {
     private static final long serialVersionUID = 9059505656260974884L;
 
     private final Language[] languages;
-    private transient List<WordAndLanguage> allWords;
+    // A view into a backing word list shared with the data sets this one was shuffled, split or filtered from
+    private transient WordView allWords;
     private transient Map<Language, Integer> languagesReverseMap;
+    private transient volatile DataSetStatistics statistics;
+    // Whether the words are kept off the heap, so they are stored the same way again when the data set is read back
+    private final boolean offHeap;
 
     public LanguageWordsDataSet(Random random, Language... languages) {
         this(languages, getAllWords(languages, random));
     }
 
+    /**
+     * Same words as {@link #LanguageWordsDataSet(Random, Language...)}, but kept in direct buffers off the heap. The
+     * data set itself only holds one int per word for its order.
+     */
+    public static LanguageWordsDataSet offHeap(Random random, Language... languages) {
+        return new LanguageWordsDataSet(languages, getOffHeapWords(languages, random));
+    }
+
     public LanguageWordsDataSet(List<WordAndLanguage> allWords, Language... languages) {
         this(languages, Collections.unmodifiableList(new ArrayList<>(allWords)));
     }
 
-    private LanguageWordsDataSet(Language[] languages, List<WordAndLanguage> allWords) {
+    /**
+     * Uses the list without copying it, so it must never change.
+     */
+    LanguageWordsDataSet(Language[] languages, List<WordAndLanguage> allWords) {
+        this(languages, WordView.of(allWords));
+    }
+
+    private LanguageWordsDataSet(Language[] languages, WordView allWords) {
         assert languages.length > 0;
         this.languages = languages;
         this.allWords = allWords;
         this.languagesReverseMap = getLanguagesReverseMap();
+        this.offHeap = allWords.store instanceof OffHeapWordStore;
     }
 
     public int numWords() {
         return allWords.size();
     }
 
+    String wordAt(int index) {
+        return allWords.get(index).getWord();
+    }
+
+    boolean isWordInLanguage(int index, int languageIndex) {
+        return allWords.get(index).getLanguageIndices().get(languageIndex);
+    }
+
     public int findMaxWordLengthForDataSetCoverage(double fractionWordsCovered) {
-        int maxLength = 0;
-        Map<Integer, Integer> lengths = new HashMap<>();
-        for (WordAndLanguage wordAndLanguage : allWords) {
-            String word = wordAndLanguage.word;
-            int length = word.length();
-            lengths.put(length, lengths.getOrDefault(length, 0) + 1);
-            maxLength = Math.max(maxLength, length);
-        }
-        double cumulativeTotal = 0;
-        for (int i = 0; i <= maxLength; i++) {
-            cumulativeTotal += lengths.getOrDefault(i, 0);
-            if (cumulativeTotal / allWords.size() >= fractionWordsCovered) {
-                return i;
-            }
+        return statistics().getMaxWordLengthForCoverage(fractionWordsCovered);
+    }
+
+    /**
+     * Length, letter and overlap statistics of the words, computed on first use and cached since the words never change
+     */
+    public DataSetStatistics statistics() {
+        DataSetStatistics statistics = this.statistics;
+        if (statistics == null) {
+            statistics = DataSetStatistics.compute(languages, allWords);
+            this.statistics = statistics;
         }
-        return maxLength;
+        return statistics;
     }
 
     public LanguageWordsDataSet filter(Predicate<String> filter) {
-        List<WordAndLanguage> allWordsCopy = allWords.stream().filter(word -> filter.test(word.getWord())).collect(Collectors.toList());
-        return new LanguageWordsDataSet(languages, allWordsCopy);
+        return new LanguageWordsDataSet(languages, allWords.filter(word -> filter.test(word.getWord())));
     }
 
     public LanguageWordsDataSet createSubset(int offset, int wordCount) {
-        return new LanguageWordsDataSet(languages, allWords.subList(offset, offset + wordCount));
+        if (offset < 0 || wordCount < 0 || offset + wordCount > allWords.size()) {
+            throw new IndexOutOfBoundsException(String.format("subset (%d, %d) out of bounds for %d words", offset, wordCount, allWords.size()));
+        }
+        return new LanguageWordsDataSet(languages, allWords.subView(offset, offset + wordCount));
     }
 
     public LanguageWordsDataSet createRandomSubset(int wordCount, Random random) {
-        List<WordAndLanguage> allWordsCopy = new ArrayList<>(allWords);
-        Collections.shuffle(allWordsCopy, random);
-        return new LanguageWordsDataSet(languages, allWordsCopy.subList(0, wordCount));
+        if (wordCount < 0 || wordCount > allWords.size()) {
+            throw new IllegalArgumentException(String.format("word count (%d) must be between 0 and the number of words (%d)", wordCount, allWords.size()));
+        }
+        return new LanguageWordsDataSet(languages, allWords.shuffle(wordCount, random));
     }
 
-    public LanguageWordsDataSet addAll(Language language, String... words) {
-        if (!hasLanguage(language)) {
-            throw new IllegalArgumentException("Invalid language (" + language.getName() + ") for data set");
-        }
-        List<WordAndLanguage> allWordsCopy = new ArrayList<>(allWords);
-        for (String word : words) {
-            allWordsCopy.add(new WordAndLanguage(word, languagesReverseMap, language));
+    /**
+     * Splits the words into {@code k} folds of a random permutation. Every fold is a view backed by the one shared
+     * permutation, so the word list is never copied.
+     */
+    public List<DataSetFold> createFolds(int k, Random random) {
+        int numWords = allWords.size();
+        if (k < 2 || k > numWords) throw new IllegalArgumentException(String.format("number of folds (%d) must be between 2 and the number of words (%d)", k, numWords));
+        WordView shuffled = allWords.shuffle(numWords, random);
+        List<DataSetFold> folds = new ArrayList<>(k);
+        for (int fold = 0; fold < k; fold++) {
+            int start = (int) ((long) numWords * fold / k);
+            int end = (int) ((long) numWords * (fold + 1) / k);
+            LanguageWordsDataSet training = new LanguageWordsDataSet(languages, shuffled.withoutRange(start, end));
+            LanguageWordsDataSet validation = new LanguageWordsDataSet(languages, shuffled.subView(start, end));
+            folds.add(new DataSetFold(fold, training, validation));
         }
-        return new LanguageWordsDataSet(languages, allWordsCopy);
+        return folds;
+    }
+
+    /**
+     * Words already in the data set get the language added instead of being duplicated.
+     *
+     * @deprecated copies and re-hashes every word of the data set on each call. Keep a
+     * {@link MutableLanguageWordsDataSet} instead, created once with {@link MutableLanguageWordsDataSet#from}, and take a
+     * {@link MutableLanguageWordsDataSet#snapshot()} after adding words.
+     */
+    @Deprecated
+    public LanguageWordsDataSet addAll(Language language, String... words) {
+        return MutableLanguageWordsDataSet.from(this).addAll(language, words).snapshot();
+    }
+
+    /**
+     * @return a read-only view of the words, in data set order
+     */
+    public List<String> getWords() {
+        List<WordAndLanguage> allWords = this.allWords;
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return allWords.get(index).getWord();
+            }
+
+            @Override
+            public int size() {
+                return allWords.size();
+            }
+        };
+    }
+
+    List<WordAndLanguage> words() {
+        return allWords;
     }
 
     public boolean hasLanguage(Language language) {
@@ -117,58 +189,116 @@ public class LanguageWordsDataSet implements Serializable {
     }
 
     public BatchFullDataSetStream buildDataSetGenerator(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, int batchSize) {
+        return buildDataSetGenerator(FeatureExtractor.positional(inputLettersCount, maxWordLength, letterEncoder), batchSize);
+    }
+
+    public BatchFullDataSetStream buildDataSetGenerator(FeatureExtractor featureExtractor, int batchSize) {
+        return buildDataSetGenerator(featureExtractor, BatchSchedule.fixed(numWords(), batchSize));
+    }
+
+    BatchFullDataSetStream buildDataSetGenerator(FeatureExtractor featureExtractor, BatchSchedule schedule) {
         List<WordAndLanguage> allWords = this.allWords;
-        int inputs = (inputLettersCount + 1) * maxWordLength;
+        int inputs = featureExtractor.numFeatures();
         int outputs = languages.length;
-        int batchCount = (allWords.size() - 1) / batchSize + 1;
-        return new StaticFullDataSetStream(batchCount) {
+        return new StaticFullDataSetStream(schedule.numBatches()) {
             @Override
             public FullDataSet getBatch(int batchIndex) {
-                int batchStart = batchIndex % batchCount * batchSize;
-                int batchEnd = batchStart + batchSize;
-                List<WordAndLanguage> wordBatch = allWords.subList(batchStart, batchEnd <= allWords.size() ? batchEnd : allWords.size());
-                int totalWords = wordBatch.size();
-                SimpleMatrix dataSet = new SimpleMatrix(totalWords, inputs, MatrixType.DDRM);
-                SimpleMatrix target = new SimpleMatrix(totalWords, outputs, MatrixType.DDRM);
-                int row = 0;
-                for (WordAndLanguage wordAndLanguage : wordBatch) {
-                    setDataToMatrix(inputLettersCount, maxWordLength, letterEncoder, wordAndLanguage.getLanguageIndices(), wordAndLanguage.getWord(), row, dataSet, target);
-                    row++;
+                int[] rows = schedule.rows(batchIndex);
+                int[] columns = new int[featureExtractor.maxActiveFeatures()];
+                SimpleMatrix dataSet = new SimpleMatrix(rows.length, inputs, MatrixType.DDRM);
+                SimpleMatrix target = new SimpleMatrix(rows.length, outputs, MatrixType.DDRM);
+                for (int row = 0; row < rows.length; row++) {
+                    WordAndLanguage wordAndLanguage = allWords.get(rows[row]);
+                    int count = featureExtractor.extract(wordAndLanguage.getWord(), columns, 0);
+                    for (int k = 0; k < count; k++) {
+                        dataSet.set(row, columns[k], 1.0);
+                    }
+                    BitSet languageIndices = wordAndLanguage.getLanguageIndices();
+                    for (int targetCol = outputs - 1; count > 0 && targetCol >= 0; targetCol--) {
+                        if (languageIndices.get(targetCol)) {
+                            target.set(row, targetCol, 1.0);
+                        }
+                    }
                 }
                 return new FullDataSet(new DataSet(dataSet), new DataSetTarget(target, languages.length));
             }
         };
     }
 
-    private void setDataToMatrix(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, BitSet languageIndices, String word, int row, SimpleMatrix dataSet, SimpleMatrix target) {
-        if (word.length() > maxWordLength) {
-            word = word.substring(0, maxWordLength);
-        }
-        for (int i = 0, n = word.length(); i < maxWordLength; i++) {
-            int c = letterEncoder.applyAsInt(i < n ? word.charAt(i) : ' ');
-            if (c >= 0 && c < inputLettersCount + 1) {
-                int col = i * (inputLettersCount + 1) + c;
-                dataSet.set(row, col, 1.0);
-                for (int targetCol = target.numCols() - 1; targetCol >= 0; targetCol--) {
-                    if (languageIndices.get(targetCol)) {
-                        target.set(row, targetCol, 1.0);
+    SparseBatchStream buildSparseBatchGenerator(FeatureExtractor featureExtractor, int batchSize) {
+        return buildSparseBatchGenerator(featureExtractor, BatchSchedule.fixed(numWords(), batchSize));
+    }
+
+    SparseBatchStream buildSparseBatchGenerator(FeatureExtractor featureExtractor, BatchSchedule schedule) {
+        List<WordAndLanguage> allWords = this.allWords;
+        int outputs = languages.length;
+        return new SparseBatchStream() {
+            @Override
+            public int numBatches() {
+                return schedule.numBatches();
+            }
+
+            @Override
+            public SparseBatch getBatch(int batchIndex) {
+                int[] batchRows = schedule.rows(batchIndex);
+                int rows = batchRows.length;
+                int[] rowStarts = new int[rows + 1];
+                int[] columns = new int[rows * featureExtractor.maxActiveFeatures()];
+                boolean[] targets = new boolean[rows * outputs];
+                int count = 0;
+                for (int row = 0; row < rows; row++) {
+                    WordAndLanguage wordAndLanguage = allWords.get(batchRows[row]);
+                    rowStarts[row] = count;
+                    count += featureExtractor.extract(wordAndLanguage.getWord(), columns, count);
+                    BitSet languageIndices = wordAndLanguage.getLanguageIndices();
+                    for (int i = languageIndices.nextSetBit(0); i >= 0 && i < outputs; i = languageIndices.nextSetBit(i + 1)) {
+                        targets[row * outputs + i] = true;
                     }
                 }
+                rowStarts[rows] = count;
+                return new SparseBatch(rows, outputs, rowStarts, columns, targets);
+            }
+        };
+    }
+
+    EncodedDataSet encode(FeatureExtractor featureExtractor) {
+        List<WordAndLanguage> allWords = this.allWords;
+        int rows = allWords.size();
+        int outputs = languages.length;
+        int[] rowStarts = new int[rows + 1];
+        int[] columns = new int[rows * featureExtractor.maxActiveFeatures()];
+        boolean[] targets = new boolean[rows * outputs];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            WordAndLanguage wordAndLanguage = allWords.get(row);
+            rowStarts[row] = count;
+            count += featureExtractor.extract(wordAndLanguage.getWord(), columns, count);
+            BitSet languageIndices = wordAndLanguage.getLanguageIndices();
+            for (int i = languageIndices.nextSetBit(0); i >= 0 && i < outputs; i = languageIndices.nextSetBit(i + 1)) {
+                targets[row * outputs + i] = true;
             }
         }
+        rowStarts[rows] = count;
+        return new EncodedDataSet(rows, outputs, rowStarts, columns, targets);
     }
 
-    void setDataToArray(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, String word, double[] data) {
-        if (word.length() > maxWordLength) {
-            word = word.substring(0, maxWordLength);
+    static void setDataToArray(FeatureExtractor featureExtractor, String word, double[] data) {
+        int[] columns = new int[featureExtractor.maxActiveFeatures()];
+        int count = featureExtractor.extract(word, columns, 0);
+        for (int k = 0; k < count; k++) {
+            data[columns[k]] = 1.0;
         }
-        for (int i = 0, n = word.length(); i < maxWordLength; i++) {
+    }
+
+    static int setDataToColumns(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder, String word, int[] columns, int offset) {
+        int count = 0;
+        for (int i = 0, n = Math.min(word.length(), maxWordLength); i < maxWordLength; i++) {
             int c = letterEncoder.applyAsInt(i < n ? word.charAt(i) : ' ');
             if (c >= 0 && c < inputLettersCount + 1) {
-                int col = i * (inputLettersCount + 1) + c;
-                data[col] = 1.0;
+                columns[offset + count++] = i * (inputLettersCount + 1) + c;
             }
         }
+        return count;
     }
 
     private static List<WordAndLanguage> getAllWords(Language[] languages, Random random) {
@@ -183,13 +313,18 @@ public class LanguageWordsDataSet implements Serializable {
         return words;
     }
 
+    private static WordView getOffHeapWords(Language[] languages, Random random) {
+        OffHeapWordStore store = OffHeapWordStore.build(languages);
+        return WordView.of(store).shuffle(store.size(), random);
+    }
+
     public Language[] getLanguages() {
         return languages;
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
-        this.allWords = getAllWords(languages, new Random());
+        this.allWords = offHeap ? getOffHeapWords(languages, new Random()) : WordView.of(getAllWords(languages, new Random()));
         this.languagesReverseMap = getLanguagesReverseMap();
     }
 
@@ -201,11 +336,127 @@ public class LanguageWordsDataSet implements Serializable {
         return reverseMap;
     }
 
-    private static class WordAndLanguage {
+    /**
+     * Read-only view of an immutable backing list: position {@code i} maps to backing index {@code order[start + i]},
+     * or {@code start + i} when there is no order, skipping the {@code holeLength} positions from {@code holeStart}.
+     * Views never modify their order array, so any number of them can share one.
+     */
+    private static final class WordView extends AbstractList<WordAndLanguage> implements RandomAccess {
+        private final List<WordAndLanguage> store;
+        private final int[] order;
+        private final int start;
+        private final int holeStart;
+        private final int holeLength;
+        private final int size;
+
+        private WordView(List<WordAndLanguage> store, int[] order, int start, int size, int holeStart, int holeLength) {
+            this.store = store;
+            this.order = order;
+            this.start = start;
+            this.holeStart = holeStart;
+            this.holeLength = holeLength;
+            this.size = size;
+        }
+
+        private static WordView of(List<WordAndLanguage> store) {
+            return new WordView(store, null, 0, store.size(), store.size(), 0);
+        }
+
+        private static WordView ordered(List<WordAndLanguage> store, int[] order, int size) {
+            return new WordView(store, order, 0, size, size, 0);
+        }
+
+        private int storeIndex(int index) {
+            int position = start + index;
+            if (position >= holeStart) {
+                position += holeLength;
+            }
+            return order == null ? position : order[position];
+        }
+
+        @Override
+        public WordAndLanguage get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return store.get(storeIndex(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * O(1) unless the range spans this view's hole, in which case only the indices of the range are copied.
+         */
+        private WordView subView(int from, int to) {
+            if (start + to <= holeStart) {
+                return new WordView(store, order, start + from, to - from, Integer.MAX_VALUE, 0);
+            }
+            if (start + from >= holeStart) {
+                return new WordView(store, order, start + from + holeLength, to - from, Integer.MAX_VALUE, 0);
+            }
+            return ordered(store, indices(from, to), to - from);
+        }
+
+        /**
+         * @return this view without positions {@code from} to {@code to - 1}, in O(1) when this view has no hole
+         */
+        private WordView withoutRange(int from, int to) {
+            if (holeLength == 0) {
+                return new WordView(store, order, start, size - (to - from), start + from, to - from);
+            }
+            int[] indices = new int[size - (to - from)];
+            for (int i = 0, j = 0; i < size; i++) {
+                if (i < from || i >= to) {
+                    indices[j++] = storeIndex(i);
+                }
+            }
+            return ordered(store, indices, indices.length);
+        }
+
+        /**
+         * Partial Fisher-Yates shuffle over a fresh array of backing indices; only the first {@code count} positions
+         * are drawn.
+         */
+        private WordView shuffle(int count, Random random) {
+            int[] indices = indices(0, size);
+            for (int i = 0; i < count && i < size - 1; i++) {
+                int j = i + random.nextInt(size - i);
+                int swap = indices[i];
+                indices[i] = indices[j];
+                indices[j] = swap;
+            }
+            return ordered(store, indices, count);
+        }
+
+        private WordView filter(Predicate<WordAndLanguage> filter) {
+            int[] indices = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int index = storeIndex(i);
+                if (filter.test(store.get(index))) {
+                    indices[count++] = index;
+                }
+            }
+            return ordered(store, Arrays.copyOf(indices, count), count);
+        }
+
+        private int[] indices(int from, int to) {
+            int[] indices = new int[to - from];
+            for (int i = from; i < to; i++) {
+                indices[i - from] = storeIndex(i);
+            }
+            return indices;
+        }
+    }
+
+    static class WordAndLanguage {
         private final String word;
         private final BitSet languageIndices;
 
-        private WordAndLanguage(String word, Map<Language, Integer> reverseMap, Language... languages) {
+        WordAndLanguage(String word, Map<Language, Integer> reverseMap, Language... languages) {
             this(word, languagesToBitSet(reverseMap, languages));
         }
 
@@ -220,7 +471,7 @@ public class LanguageWordsDataSet implements Serializable {
             return bitSet;
         }
 
-        private WordAndLanguage(String word, BitSet languageIndex) {
+        WordAndLanguage(String word, BitSet languageIndex) {
             this.word = word;
             this.languageIndices = languageIndex;
         }
@@ -229,7 +480,7 @@ public class LanguageWordsDataSet implements Serializable {
             return word;
         }
 
-        private BitSet getLanguageIndices() {
+        BitSet getLanguageIndices() {
             return languageIndices;
         }
     }
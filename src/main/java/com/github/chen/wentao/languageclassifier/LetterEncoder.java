@@ -5,7 +5,6 @@ import com.github.chen.wentao.languageclassifier.languages.Language;
 
 import java.io.Serializable;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.IntUnaryOperator;
@@ -14,14 +13,22 @@ import java.util.function.IntUnaryOperator;
 public interface LetterEncoder extends IntUnaryOperator, Serializable {
 
     static LetterEncoder fromLanguages(Language... languages) {
-        Set<Character> letters = new HashSet<>();
-        for (Language language : languages) {
-            letters.addAll(language.getLetters());
+        Set<Character> letterSet = Language.distinctLetters(languages);
+        char[] letters = new char[letterSet.size()];
+        int i = 0;
+        for (char letter : letterSet) {
+            letters[i++] = letter;
         }
+        return fromLetters(letters);
+    }
+
+    /**
+     * Encodes each letter as its index in {@code letters}
+     */
+    static LetterEncoder fromLetters(char[] letters) {
         Map<Character, Integer> map = new HashMap<>();
-        int i = 0;
-        for (char letter : letters) {
-            map.put(letter, i++);
+        for (int i = 0; i < letters.length; i++) {
+            map.put(letters[i], i);
         }
         return c -> {
             Integer encoding = map.get((char) c);
@@ -1,48 +1,239 @@
 package com.github.chen.wentao.languageclassifier;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class LetterEncodingFileConverter {
+
+    private static final int CHUNK_LINES = 8192;
+    private static final int BUFFER_SIZE = 1 << 16;
+
 //file -f src/main/resources/turkish/tr.txt -o test.txt -c
     public static void convert(Path inputFile, String outputFile, Function<Character, String> encoder) throws IOException {
         Set<Character> invalidCharacters = new HashSet<>();
         Map<Character, String> characterMap = new HashMap<>();
         Stream<String> stream = Files.lines(inputFile)
-                .map(s -> {
-                    StringBuilder str = new StringBuilder();
-                    for (int i = 0; i < s.length(); i++) {
-                        char c = Character.toLowerCase(s.charAt(i));
-                        if (invalidCharacters.contains(c)) {
-                            return null;
-                        }
-                        if (!Character.isWhitespace(c) && !Character.isDigit(c)) {
-                            String encoding = characterMap.computeIfAbsent(c, ch -> {
-                                String mapping = encoder.apply(ch);
-                                if (mapping == null) {
-                                    invalidCharacters.add(ch);
-                                }
-                                return mapping;
-                            });
-                            str.append(encoding);
-                        } else {
-                            str.append(c);
-                        }
+                .map(s -> convertLine(s, c -> {
+                    if (invalidCharacters.contains(c)) {
+                        return null;
                     }
-                    return str.toString();
-                });
+                    return characterMap.computeIfAbsent(c, ch -> {
+                        String mapping = encoder.apply(ch);
+                        if (mapping == null) {
+                            invalidCharacters.add(ch);
+                        }
+                        return mapping;
+                    });
+                }));
         try (PrintWriter pw = new PrintWriter(outputFile)) {
             stream.filter(Objects::nonNull).forEachOrdered(pw::println);
         }
     }
 
+    /**
+     * Converts a file without prompting: characters are looked up in a fixed mapping table and lines with a character
+     * missing from it are dropped and counted. Chunks of lines are converted concurrently and written in input order.
+     */
+    public static Result convert(Path inputFile, Path outputFile, Map<Character, String> mapping, int threads) throws IOException {
+        if (threads <= 0) throw new IllegalArgumentException(String.format("number of threads (%d) must be greater than 0", threads));
+        Map<Character, String> table = Collections.unmodifiableMap(new HashMap<>(mapping));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "convert");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long startTime = System.nanoTime();
+        Result result = new Result();
+        Queue<Future<Chunk>> pending = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(Files.newBufferedReader(inputFile, StandardCharsets.UTF_8), BUFFER_SIZE);
+             BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            List<String> lines;
+            while (!(lines = readChunk(reader)).isEmpty()) {
+                List<String> chunkLines = lines;
+                pending.add(executor.submit(() -> convertChunk(chunkLines, table)));
+                if (pending.size() >= threads * 2) {
+                    write(pending.remove().get(), writer, result);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.remove().get(), writer, result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        result.nanos = System.nanoTime() - startTime;
+        return result;
+    }
+
+    /**
+     * Reads a mapping table with one character per line followed by its encoding, separated by whitespace. The
+     * character may be written as {@code U+XXXX}. A character without an encoding is unmapped; blank lines and lines
+     * starting with {@code #} are ignored.
+     */
+    public static Map<Character, String> readMappingTable(Path file) throws IOException {
+        Map<Character, String> mapping = new HashMap<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] parts = trimmed.split("\\s+", 2);
+            char c;
+            if (parts[0].length() == 1) {
+                c = parts[0].charAt(0);
+            } else if (parts[0].matches("[Uu]\\+[0-9A-Fa-f]{4}")) {
+                c = (char) Integer.parseInt(parts[0].substring(2), 16);
+            } else {
+                throw new IllegalArgumentException(String.format("invalid character '%s' on line %d of %s", parts[0], lineNumber, file));
+            }
+            if (parts.length > 1) {
+                mapping.put(Character.toLowerCase(c), parts[1]);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Writes the unmapped characters of a conversion, most frequent first, as tab separated character, code point and
+     * number of lines dropped because of it.
+     */
+    public static void writeUnmappedStatistics(Result result, Path file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (Map.Entry<Character, Long> entry : result.getUnmappedCharacters()) {
+                char c = entry.getKey();
+                pw.printf("%c\tU+%04X\t%d%n", c, (int) c, entry.getValue());
+            }
+        }
+    }
+
+    private static String convertLine(String line, Function<Character, String> encoder) {
+        StringBuilder str = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = Character.toLowerCase(line.charAt(i));
+            if (!Character.isWhitespace(c) && !Character.isDigit(c)) {
+                String encoding = encoder.apply(c);
+                if (encoding == null) {
+                    return null;
+                }
+                str.append(encoding);
+            } else {
+                str.append(c);
+            }
+        }
+        return str.toString();
+    }
+
+    private static List<String> readChunk(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>(CHUNK_LINES);
+        String line;
+        while (lines.size() < CHUNK_LINES && (line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static Chunk convertChunk(List<String> lines, Map<Character, String> table) {
+        Chunk chunk = new Chunk(lines.size());
+        for (String line : lines) {
+            // Remember the first unmapped character so the dropped line is attributed to it
+            char[] unmapped = new char[1];
+            String converted = convertLine(line, c -> {
+                String encoding = table.get(c);
+                if (encoding == null) {
+                    unmapped[0] = c;
+                }
+                return encoding;
+            });
+            if (converted == null) {
+                chunk.unmapped.merge(unmapped[0], 1L, Long::sum);
+            } else {
+                chunk.lines.add(converted);
+            }
+        }
+        return chunk;
+    }
+
+    private static void write(Chunk chunk, BufferedWriter writer, Result result) throws IOException {
+        for (String line : chunk.lines) {
+            writer.write(line);
+            writer.newLine();
+        }
+        result.linesRead += chunk.linesRead;
+        result.linesWritten += chunk.lines.size();
+        chunk.unmapped.forEach((c, count) -> result.unmapped.merge(c, count, Long::sum));
+    }
+
+    private static class Chunk {
+        private final int linesRead;
+        private final List<String> lines;
+        private final Map<Character, Long> unmapped = new HashMap<>();
+
+        private Chunk(int linesRead) {
+            this.linesRead = linesRead;
+            this.lines = new ArrayList<>(linesRead);
+        }
+    }
+
+    public static class Result {
+        private long linesRead;
+        private long linesWritten;
+        private long nanos;
+        private final Map<Character, Long> unmapped = new HashMap<>();
+
+        private Result() {
+        }
+
+        public long getLinesRead() {
+            return linesRead;
+        }
+
+        public long getLinesWritten() {
+            return linesWritten;
+        }
+
+        public long getLinesDropped() {
+            return linesRead - linesWritten;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Unmapped characters and the number of lines dropped because of them, most frequent first
+         */
+        public List<Map.Entry<Character, Long>> getUnmappedCharacters() {
+            List<Map.Entry<Character, Long>> entries = new ArrayList<>(unmapped.entrySet());
+            entries.sort(Map.Entry.<Character, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            return entries;
+        }
+    }
 }
@@ -0,0 +1,265 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Several classifiers evaluated as one. Members whose words are encoded identically (same features, or for positional
+ * features the same letter encoding, letter count and maximum word length) are fused into a single network: their
+ * hidden layers are concatenated and their output layers placed block diagonally, so a word is encoded once per
+ * distinct encoding and the active first layer rows are read once for all of those members. Languages are matched
+ * across members by ISO 639-1 code.
+ */
+public final class ModelGroup {
+
+    public enum Combination {
+        /**
+         * A language's score is the mean of its outputs in the members that classify it
+         */
+        ONE_VS_REST,
+        /**
+         * Each member votes for its best language; a language's score is the fraction of the members classifying it
+         * that voted for it, plus the one-vs-rest score scaled down to only break ties
+         */
+        VOTING
+    }
+
+    private final Combination combination;
+    private final Language[] languages;
+    private final FusedNetwork[] networks;
+    private final int numModels;
+    // Number of members classifying each language
+    private final int[] memberCounts;
+
+    private ModelGroup(Combination combination, Language[] languages, FusedNetwork[] networks, int numModels, int[] memberCounts) {
+        this.combination = combination;
+        this.languages = languages;
+        this.networks = networks;
+        this.numModels = numModels;
+        this.memberCounts = memberCounts;
+    }
+
+    public static ModelGroup of(Combination combination, LanguageClassifier... classifiers) {
+        if (classifiers.length == 0) throw new IllegalArgumentException("There must be at least 1 classifier.");
+        Map<String, Integer> languageIndices = new LinkedHashMap<>();
+        List<Language> languages = new ArrayList<>();
+        for (LanguageClassifier classifier : classifiers) {
+            for (Language language : classifier.getLanguages()) {
+                if (!languageIndices.containsKey(language.getIso6391())) {
+                    languageIndices.put(language.getIso6391(), languages.size());
+                    languages.add(language);
+                }
+            }
+        }
+        int[] memberCounts = new int[languages.size()];
+        Map<List<Object>, List<LanguageClassifier>> encodings = new LinkedHashMap<>();
+        char[] letters = allLetters(classifiers);
+        for (LanguageClassifier classifier : classifiers) {
+            encodings.computeIfAbsent(encodingSignature(classifier, letters), signature -> new ArrayList<>()).add(classifier);
+            for (Language language : classifier.getLanguages()) {
+                memberCounts[languageIndices.get(language.getIso6391())]++;
+            }
+        }
+        List<FusedNetwork> networks = new ArrayList<>(encodings.size());
+        for (List<LanguageClassifier> members : encodings.values()) {
+            networks.add(new FusedNetwork(members, languageIndices));
+        }
+        return new ModelGroup(combination, languages.toArray(new Language[0]), networks.toArray(new FusedNetwork[0]), classifiers.length, memberCounts);
+    }
+
+    public Map<Language, Double> process(String input) {
+        return toMap(scores(input));
+    }
+
+    public List<Map<Language, Double>> processBatch(List<String> inputs) {
+        double[][] scores = scores(inputs);
+        List<Map<Language, Double>> results = new ArrayList<>(scores.length);
+        for (double[] score : scores) {
+            results.add(toMap(score));
+        }
+        return results;
+    }
+
+    public Language predict(String input) {
+        return languages[predictIndex(input)];
+    }
+
+    public int predictIndex(String input) {
+        double[] scores = scores(input);
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Combined score of each of {@link #getLanguages()} for a word
+     */
+    public double[] scores(String input) {
+        return scores(Collections.singletonList(input))[0];
+    }
+
+    /**
+     * Encodes the batch once per distinct encoding and evaluates every fused network on the shared encoding
+     */
+    public double[][] scores(List<String> inputs) {
+        double[][] sums = new double[inputs.size()][languages.length];
+        int[][] votes = new int[inputs.size()][languages.length];
+        for (FusedNetwork network : networks) {
+            network.evaluate(inputs, sums, votes);
+        }
+        double[][] scores = new double[inputs.size()][languages.length];
+        for (int row = 0; row < inputs.size(); row++) {
+            for (int i = 0; i < languages.length; i++) {
+                double mean = sums[row][i] / memberCounts[i];
+                // Distinct vote fractions differ by at least 1 / numModels^2 and the mean is below 1, so the tie
+                // breaking term never reorders them
+                scores[row][i] = combination == Combination.VOTING
+                        ? (double) votes[row][i] / memberCounts[i] + mean / (numModels * numModels + 1.0)
+                        : mean;
+            }
+        }
+        return scores;
+    }
+
+    public Language[] getLanguages() {
+        return languages.clone();
+    }
+
+    public Combination getCombination() {
+        return combination;
+    }
+
+    public int numModels() {
+        return numModels;
+    }
+
+    /**
+     * Number of fused networks, one per distinct word encoding among the members
+     */
+    public int numEncodings() {
+        return networks.length;
+    }
+
+    private Map<Language, Double> toMap(double[] scores) {
+        Map<Language, Double> results = new HashMap<>();
+        for (int i = 0; i < languages.length; i++) {
+            results.put(languages[i], scores[i]);
+        }
+        return results;
+    }
+
+    private static char[] allLetters(LanguageClassifier[] classifiers) {
+        TreeSet<Character> letters = new TreeSet<>();
+        letters.add(' ');
+        for (LanguageClassifier classifier : classifiers) {
+            letters.addAll(Language.distinctLetters(classifier.getLanguages()));
+        }
+        char[] result = new char[letters.size()];
+        int i = 0;
+        for (char letter : letters) {
+            result[i++] = letter;
+        }
+        return result;
+    }
+
+    // Letter encoders are separately deserialized lambdas, so positional features are compared by what their encoder
+    // does to every letter of the group
+    private static List<Object> encodingSignature(LanguageClassifier classifier, char[] letters) {
+        if (!(classifier.getFeatureExtractor() instanceof PositionalFeatureExtractor)) {
+            return Collections.singletonList(classifier.getFeatureExtractor());
+        }
+        List<Object> signature = new ArrayList<>(letters.length + 2);
+        signature.add(classifier.getInputLettersCount());
+        signature.add(classifier.getMaxWordLength());
+        for (char letter : letters) {
+            signature.add(classifier.getLetterEncoder().applyAsInt(letter));
+        }
+        return signature;
+    }
+
+    private static class FusedNetwork {
+        private final FeatureExtractor featureExtractor;
+        private final int outputs;
+        private final InferenceKernel kernel;
+        private final int hiddenUnits;
+        // Fused output index range of each member, and the group language index of each fused output
+        private final int[] memberOutputStarts;
+        private final int[] outputLanguages;
+
+        private FusedNetwork(List<LanguageClassifier> members, Map<String, Integer> languageIndices) {
+            this.featureExtractor = members.get(0).getFeatureExtractor();
+            NetworkWeights[] weights = new NetworkWeights[members.size()];
+            int hiddenUnits = 0;
+            int outputs = 0;
+            for (int m = 0; m < members.size(); m++) {
+                weights[m] = members.get(m).getNetworkWeights();
+                if (weights[m].numLayers() != 2) throw new IllegalArgumentException("Only single hidden layer networks can be grouped. Layers: " + weights[m].numLayers());
+                hiddenUnits += weights[m].rows(0);
+                outputs += weights[m].rows(1);
+            }
+            int inputRows = weights[0].cols(0);
+            this.hiddenUnits = hiddenUnits;
+            this.outputs = outputs;
+            this.memberOutputStarts = new int[members.size() + 1];
+            this.outputLanguages = new int[outputs];
+            // (inputs + 1) x hiddenUnits and outputs x (hiddenUnits + 1), laid out as InferenceKernel expects
+            float[] firstLayer = new float[inputRows * hiddenUnits];
+            float[] secondLayer = new float[outputs * (hiddenUnits + 1)];
+            int hiddenStart = 0;
+            for (int m = 0; m < members.size(); m++) {
+                int memberHidden = weights[m].rows(0);
+                int memberOutputs = weights[m].rows(1);
+                int outputStart = memberOutputStarts[m];
+                double[] first = weights[m].layer(0);
+                for (int j = 0; j < memberHidden; j++) {
+                    for (int col = 0; col < inputRows; col++) {
+                        firstLayer[col * hiddenUnits + hiddenStart + j] = (float) first[j * inputRows + col];
+                    }
+                }
+                double[] second = weights[m].layer(1);
+                for (int i = 0; i < memberOutputs; i++) {
+                    int row = (outputStart + i) * (hiddenUnits + 1);
+                    secondLayer[row] = (float) second[i * (memberHidden + 1)];
+                    for (int j = 0; j < memberHidden; j++) {
+                        secondLayer[row + 1 + hiddenStart + j] = (float) second[i * (memberHidden + 1) + 1 + j];
+                    }
+                    outputLanguages[outputStart + i] = languageIndices.get(members.get(m).getLanguages()[i].getIso6391());
+                }
+                hiddenStart += memberHidden;
+                memberOutputStarts[m + 1] = outputStart + memberOutputs;
+            }
+            this.kernel = InferenceKernel.create(hiddenUnits, outputs, firstLayer, secondLayer);
+        }
+
+        private void evaluate(List<String> inputs, double[][] sums, int[][] votes) {
+            int[] columns = new int[featureExtractor.maxActiveFeatures()];
+            float[] hidden = new float[hiddenUnits];
+            float[] output = new float[outputs];
+            for (int row = 0; row < inputs.size(); row++) {
+                int count = featureExtractor.extract(inputs.get(row), columns, 0);
+                kernel.forward(columns, count, hidden, output);
+                for (int m = 0; m + 1 < memberOutputStarts.length; m++) {
+                    int best = memberOutputStarts[m];
+                    for (int i = memberOutputStarts[m]; i < memberOutputStarts[m + 1]; i++) {
+                        sums[row][outputLanguages[i]] += output[i];
+                        if (output[i] > output[best]) {
+                            best = i;
+                        }
+                    }
+                    votes[row][outputLanguages[best]]++;
+                }
+            }
+        }
+    }
+}
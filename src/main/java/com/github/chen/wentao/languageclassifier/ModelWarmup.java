@@ -0,0 +1,145 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Drives the encoding, single word, batch and paragraph inference paths of a freshly loaded classifier with synthetic
+ * words drawn from its alphabet until their timings stop improving, so the JIT has compiled them before real traffic
+ * arrives.
+ */
+public class ModelWarmup {
+
+    private static final Logger LOGGER = Logger.getLogger(ModelWarmup.class.getName());
+
+    private static final int WORDS_PER_ROUND = 2000;
+    private static final int BATCH_SIZE = 64;
+    private static final int PARAGRAPH_LENGTH = 20;
+    // A round within this fraction of the previous one counts as stable
+    private static final double STABLE_TOLERANCE = 0.05;
+    private static final int STABLE_ROUNDS = 3;
+
+    private ModelWarmup() {
+    }
+
+    public static Report warmUp(LanguageClassifier languageClassifier, Random random) {
+        return warmUp(languageClassifier, random, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs rounds until {@value #STABLE_ROUNDS} consecutive rounds take within {@value #STABLE_TOLERANCE} of the one
+     * before, or the time limit is reached.
+     */
+    public static Report warmUp(LanguageClassifier languageClassifier, Random random, long maxTime, TimeUnit unit) {
+        List<String> words = syntheticWords(languageClassifier, WORDS_PER_ROUND, random);
+        String[] paragraph = words.subList(0, PARAGRAPH_LENGTH).toArray(new String[0]);
+        long maxNanos = unit.toNanos(maxTime);
+        long startTime = System.nanoTime();
+        long firstRoundNanos = -1;
+        long previousRoundNanos = Long.MAX_VALUE;
+        int stableRounds = 0;
+        int rounds = 0;
+        long roundNanos;
+        do {
+            long roundStart = System.nanoTime();
+            for (String word : words) {
+                languageClassifier.predictIndex(word);
+            }
+            for (int i = 0; i < words.size(); i += BATCH_SIZE) {
+                languageClassifier.processBatch(words.subList(i, Math.min(i + BATCH_SIZE, words.size())));
+            }
+            languageClassifier.processParagraph(paragraph);
+            roundNanos = System.nanoTime() - roundStart;
+            rounds++;
+            if (firstRoundNanos < 0) {
+                firstRoundNanos = roundNanos;
+            }
+            stableRounds = Math.abs(roundNanos - previousRoundNanos) <= previousRoundNanos * STABLE_TOLERANCE ? stableRounds + 1 : 0;
+            previousRoundNanos = roundNanos;
+        } while (stableRounds < STABLE_ROUNDS && System.nanoTime() - startTime < maxNanos);
+        Report report = new Report(rounds, stableRounds >= STABLE_ROUNDS, System.nanoTime() - startTime, firstRoundNanos / words.size(), roundNanos / words.size());
+        LOGGER.fine(report::toString);
+        return report;
+    }
+
+    /**
+     * @return random words of letters from the classifier's languages, some longer than the max word length
+     */
+    static List<String> syntheticWords(LanguageClassifier languageClassifier, int count, Random random) {
+        StringBuilder alphabet = new StringBuilder();
+        for (Language language : languageClassifier.getLanguages()) {
+            for (Character letter : language.getLetters()) {
+                if (alphabet.indexOf(String.valueOf(letter)) < 0) {
+                    alphabet.append(letter);
+                }
+            }
+        }
+        char[] letters = alphabet.length() > 0 ? alphabet.toString().toCharArray() : new char[]{'a'};
+        Arrays.sort(letters);
+        int maxLength = Math.max(languageClassifier.getMaxWordLength() + 2, 1);
+        List<String> words = new ArrayList<>(count);
+        char[] word = new char[maxLength];
+        for (int i = 0; i < count; i++) {
+            int length = 1 + random.nextInt(maxLength);
+            for (int j = 0; j < length; j++) {
+                word[j] = letters[random.nextInt(letters.length)];
+            }
+            words.add(new String(word, 0, length));
+        }
+        return words;
+    }
+
+    public static class Report {
+        private final int rounds;
+        private final boolean steady;
+        private final long nanos;
+        private final long firstRoundNanosPerWord;
+        private final long lastRoundNanosPerWord;
+
+        private Report(int rounds, boolean steady, long nanos, long firstRoundNanosPerWord, long lastRoundNanosPerWord) {
+            this.rounds = rounds;
+            this.steady = steady;
+            this.nanos = nanos;
+            this.firstRoundNanosPerWord = firstRoundNanosPerWord;
+            this.lastRoundNanosPerWord = lastRoundNanosPerWord;
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        /**
+         * @return false if the time limit was reached before the timings settled
+         */
+        public boolean isSteady() {
+            return steady;
+        }
+
+        /**
+         * @return time to steady state, or to the time limit if it was not reached
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getFirstRoundNanosPerWord() {
+            return firstRoundNanosPerWord;
+        }
+
+        public long getLastRoundNanosPerWord() {
+            return lastRoundNanosPerWord;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s after %.3fs (%d rounds), %dns per word in the first round, %dns in the last",
+                    steady ? "Steady" : "Not steady", nanos / 1000000000.0, rounds, firstRoundNanosPerWord, lastRoundNanosPerWord);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.LanguageWordsDataSet.WordAndLanguage;
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Data set that words can be added to in amortized O(words added). Words are stored in fixed size chunks and indexed by
+ * a hash, so a word that is already present gets the new language merged into its languages. {@link #snapshot()}
+ * hands out immutable data sets that share the chunks; a chunk is only copied when a word in it changes languages
+ * after a snapshot was taken.
+ */
+public class MutableLanguageWordsDataSet {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final Language[] languages;
+    private final Map<Language, Integer> languageIndices = new HashMap<>();
+    private final Map<String, Integer> wordIndices = new HashMap<>();
+    private WordAndLanguage[][] chunks = new WordAndLanguage[16][];
+    private final BitSet sharedChunks = new BitSet();
+    private int numWords = 0;
+    private LanguageWordsDataSet snapshot;
+
+    public MutableLanguageWordsDataSet(Language... languages) {
+        if (languages.length <= 0) throw new IllegalArgumentException("There must be at least 1 language.");
+        this.languages = languages;
+        for (int i = 0; i < languages.length; i++) {
+            languageIndices.put(languages[i], i);
+        }
+    }
+
+    public static MutableLanguageWordsDataSet from(LanguageWordsDataSet dataSet) {
+        MutableLanguageWordsDataSet mutableDataSet = new MutableLanguageWordsDataSet(dataSet.getLanguages());
+        for (WordAndLanguage wordAndLanguage : dataSet.words()) {
+            mutableDataSet.add(wordAndLanguage);
+        }
+        if (mutableDataSet.numWords == dataSet.numWords()) {
+            // Nothing was merged, so the data set already is a snapshot of the same words
+            mutableDataSet.snapshot = dataSet;
+        }
+        return mutableDataSet;
+    }
+
+    public MutableLanguageWordsDataSet addAll(Language language, String... words) {
+        if (!languageIndices.containsKey(language)) {
+            throw new IllegalArgumentException("Invalid language (" + language.getName() + ") for data set");
+        }
+        for (String word : words) {
+            add(new WordAndLanguage(word, languageIndices, language));
+        }
+        return this;
+    }
+
+    public int numWords() {
+        return numWords;
+    }
+
+    public Language[] getLanguages() {
+        return languages;
+    }
+
+    /**
+     * @return the words added so far, in the order they were first added; later additions do not change it
+     */
+    public LanguageWordsDataSet snapshot() {
+        if (snapshot == null) {
+            int numChunks = (numWords + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+            sharedChunks.set(0, numChunks);
+            snapshot = new LanguageWordsDataSet(languages, new ChunkedWordList(Arrays.copyOf(chunks, numChunks), numWords));
+        }
+        return snapshot;
+    }
+
+    private void add(WordAndLanguage wordAndLanguage) {
+        String word = wordAndLanguage.getWord();
+        Integer index = wordIndices.get(word);
+        if (index == null) {
+            int chunk = numWords >>> CHUNK_SHIFT;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new WordAndLanguage[CHUNK_SIZE];
+            }
+            // Slots past the end of every snapshot are never read by it, so appending into a shared chunk is safe
+            chunks[chunk][numWords & (CHUNK_SIZE - 1)] = wordAndLanguage;
+            wordIndices.put(word, numWords++);
+        } else {
+            int chunk = index >>> CHUNK_SHIFT;
+            WordAndLanguage existing = chunks[chunk][index & (CHUNK_SIZE - 1)];
+            BitSet merged = (BitSet) existing.getLanguageIndices().clone();
+            merged.or(wordAndLanguage.getLanguageIndices());
+            if (merged.equals(existing.getLanguageIndices())) {
+                return;
+            }
+            if (sharedChunks.get(chunk)) {
+                chunks[chunk] = chunks[chunk].clone();
+                sharedChunks.clear(chunk);
+            }
+            chunks[chunk][index & (CHUNK_SIZE - 1)] = new WordAndLanguage(word, merged);
+        }
+        snapshot = null;
+    }
+
+    private static class ChunkedWordList extends AbstractList<WordAndLanguage> implements RandomAccess {
+        private final WordAndLanguage[][] chunks;
+        private final int size;
+
+        private ChunkedWordList(WordAndLanguage[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public WordAndLanguage get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
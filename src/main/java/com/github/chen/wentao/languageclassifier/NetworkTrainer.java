@@ -0,0 +1,36 @@
+package com.github.chen.wentao.languageclassifier;
+
+interface NetworkTrainer {
+
+    void trainBatch(SparseBatch batch, double alpha, double lambda);
+
+    /**
+     * @return the summed (not averaged) logistic cost of the batch, without regularization
+     */
+    double logLoss(SparseBatch batch);
+
+    /**
+     * @return the sum of squares of all non-bias weights
+     */
+    double squaredWeights();
+
+    NetworkWeights toWeights();
+
+    default double cost(SparseBatchStream batches, double lambda) {
+        double logLoss = 0;
+        int rows = 0;
+        for (int batchIndex = 0; batchIndex < batches.numBatches(); batchIndex++) {
+            SparseBatch batch = batches.getBatch(batchIndex);
+            logLoss += logLoss(batch);
+            rows += batch.rows();
+        }
+        if (rows == 0) {
+            return 0;
+        }
+        return (logLoss + (lambda > 0 ? lambda / 2 * squaredWeights() : 0)) / rows;
+    }
+
+    static NetworkTrainer create(NetworkWeights weights, TrainingPrecision precision) {
+        return new SparseNetworkTrainer(weights, precision);
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.mllib.training.NeuralNetwork;
+import org.ejml.data.DMatrixRMaj;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plain array copy of a network's weight matrices. Layer {@code l} is stored row-major with one row per unit of layer
+ * {@code l + 1} and one column per unit of layer {@code l} preceded by the bias column, the same layout as the
+ * {@code <l>.nnbin} files written by {@link NeuralNetwork#saveToFileBinary(String)}.
+ */
+final class NetworkWeights implements Serializable {
+
+    private static final long serialVersionUID = -2290361540186339640L;
+
+    private final int[] rows;
+    private final int[] cols;
+    private final double[][] layers;
+
+    NetworkWeights(int[] rows, int[] cols, double[][] layers) {
+        this.rows = rows;
+        this.cols = cols;
+        this.layers = layers;
+    }
+
+    /**
+     * Copies the network's weights through a temporary directory, since ml-lib has no accessor for them. Callers only
+     * do this when a checkpoint or best weights snapshot is due, never per batch or per inference kernel rebuild.
+     */
+    static NetworkWeights read(NeuralNetwork network) {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("network");
+            network.saveToFileBinary(directory.toString());
+            return readDirectory(directory.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    static NetworkWeights readDirectory(String directoryName) throws IOException {
+        List<DMatrixRMaj> matrices = new ArrayList<>();
+        for (int layer = 0; ; layer++) {
+            File file = new File(directoryName, layer + ".nnbin");
+            if (!file.exists()) {
+                break;
+            }
+            try (FileInputStream fileInputStream = new FileInputStream(file);
+                 ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
+                matrices.add((DMatrixRMaj) objectInputStream.readObject());
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (matrices.isEmpty()) throw new IOException("No network layers in " + directoryName);
+        int[] rows = new int[matrices.size()];
+        int[] cols = new int[matrices.size()];
+        double[][] layers = new double[matrices.size()][];
+        for (int i = 0; i < matrices.size(); i++) {
+            DMatrixRMaj matrix = matrices.get(i);
+            rows[i] = matrix.numRows;
+            cols[i] = matrix.numCols;
+            layers[i] = Arrays.copyOf(matrix.data, matrix.numRows * matrix.numCols);
+        }
+        return new NetworkWeights(rows, cols, layers);
+    }
+
+    void writeDirectory(String directoryName) throws IOException {
+        for (int layer = 0; layer < layers.length; layer++) {
+            DMatrixRMaj matrix = new DMatrixRMaj(rows[layer], cols[layer]);
+            System.arraycopy(layers[layer], 0, matrix.data, 0, layers[layer].length);
+            try (FileOutputStream fileOutputStream = new FileOutputStream(new File(directoryName, layer + ".nnbin"));
+                 ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
+                objectOutputStream.writeObject(matrix);
+            }
+        }
+    }
+
+    NeuralNetwork toNetwork() {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("network");
+            writeDirectory(directory.toString());
+            return NeuralNetwork.loadFromFileBinary(directory.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    NetworkWeights copy() {
+        double[][] layersCopy = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            layersCopy[i] = layers[i].clone();
+        }
+        return new NetworkWeights(rows.clone(), cols.clone(), layersCopy);
+    }
+
+    private static void deleteDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    int numLayers() {
+        return layers.length;
+    }
+
+    int rows(int layer) {
+        return rows[layer];
+    }
+
+    int cols(int layer) {
+        return cols[layer];
+    }
+
+    double[] layer(int layer) {
+        return layers[layer];
+    }
+
+    long numWeights() {
+        long count = 0;
+        for (double[] layer : layers) {
+            count += layer.length;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.LanguageWordsDataSet.WordAndLanguage;
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Distinct words of several languages and their language masks in direct buffers, so multi-million word corpora do not
+ * live on the heap as strings and {@link WordAndLanguage} objects. Words are decoded on access; the objects returned
+ * are short lived. Limited to 64 languages (one bit each in a long mask).
+ */
+final class OffHeapWordStore extends AbstractList<WordAndLanguage> implements RandomAccess {
+
+    private final CharBuffer arena;
+    private final IntBuffer offsets;
+    private final LongBuffer masks;
+    private final int size;
+
+    private OffHeapWordStore(CharBuffer arena, IntBuffer offsets, LongBuffer masks, int size) {
+        this.arena = arena;
+        this.offsets = offsets;
+        this.masks = masks;
+        this.size = size;
+    }
+
+    /**
+     * Merges the words of the languages like {@link LanguageWordsDataSet#LanguageWordsDataSet(java.util.Random, Language...)},
+     * deduplicating with an open addressing hash table that is itself off the heap.
+     */
+    static OffHeapWordStore build(Language[] languages) {
+        if (languages.length > Long.SIZE) throw new IllegalArgumentException(String.format("off-heap data sets support at most %d languages, given %d", Long.SIZE, languages.length));
+        long totalWords = 0;
+        long totalChars = 0;
+        for (Language language : languages) {
+            for (String word : language.getWords()) {
+                totalWords++;
+                totalChars += word.length();
+            }
+        }
+        if (totalWords >= Integer.MAX_VALUE / 2 || totalChars > Integer.MAX_VALUE / Character.BYTES) {
+            throw new IllegalArgumentException(String.format("too many words (%d) or characters (%d) for an off-heap data set", totalWords, totalChars));
+        }
+        CharBuffer arena = ByteBuffer.allocateDirect((int) totalChars * Character.BYTES).asCharBuffer();
+        IntBuffer offsets = ByteBuffer.allocateDirect(((int) totalWords + 1) * Integer.BYTES).asIntBuffer();
+        LongBuffer masks = ByteBuffer.allocateDirect((int) totalWords * Long.BYTES).asLongBuffer();
+        int capacity = Integer.highestOneBit((int) Math.max(totalWords * 2, 2) - 1) << 1;
+        // Word index + 1 per slot, 0 for empty
+        IntBuffer table = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+
+        int size = 0;
+        int arenaLength = 0;
+        offsets.put(0, 0);
+        for (int i = 0; i < languages.length; i++) {
+            long bit = 1L << i;
+            for (String word : languages[i].getWords()) {
+                int slot = mix(word.hashCode()) & (capacity - 1);
+                int index;
+                while ((index = table.get(slot) - 1) >= 0 && !equalsAt(arena, offsets, index, word)) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (index >= 0) {
+                    masks.put(index, masks.get(index) | bit);
+                    continue;
+                }
+                for (int c = 0; c < word.length(); c++) {
+                    arena.put(arenaLength + c, word.charAt(c));
+                }
+                arenaLength += word.length();
+                offsets.put(size + 1, arenaLength);
+                masks.put(size, bit);
+                table.put(slot, ++size);
+            }
+        }
+        return new OffHeapWordStore(arena, offsets, masks, size);
+    }
+
+    @Override
+    public WordAndLanguage get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int start = offsets.get(index);
+        char[] word = new char[offsets.get(index + 1) - start];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = arena.get(start + i);
+        }
+        return new WordAndLanguage(new String(word), BitSet.valueOf(new long[]{masks.get(index)}));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static boolean equalsAt(CharBuffer arena, IntBuffer offsets, int index, String word) {
+        int start = offsets.get(index);
+        if (offsets.get(index + 1) - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (arena.get(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
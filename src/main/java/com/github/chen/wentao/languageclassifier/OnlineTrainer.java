@@ -0,0 +1,158 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.LanguageWordsDataSet.WordAndLanguage;
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Fine-tunes a trained classifier on new labelled words without another pass over its data set. Every update trains
+ * one mini-batch of the new words mixed with words replayed from a reservoir sample of everything seen so far (the
+ * classifier's data set, then the updates), which keeps the network from forgetting the original corpus. An update
+ * costs O((new words + replayed words) * max word length * hidden units), independent of the data set size.
+ * <p>
+ * Updates go to a copy of the weights; call {@link #apply()} to write them back to the classifier.
+ */
+public class OnlineTrainer {
+
+    private final LanguageClassifier languageClassifier;
+    private final NetworkTrainer trainer;
+    private final Map<Language, Integer> languageIndices = new HashMap<>();
+    private double alpha;
+    private double lambda;
+    private final int replayPerWord;
+    private final Random random;
+    private final List<WordAndLanguage> reservoir;
+    private final int reservoirSize;
+    private long seen = 0;
+    private long updates = 0;
+
+    OnlineTrainer(LanguageClassifier languageClassifier, double alpha, double lambda, int reservoirSize, int replayPerWord, Random random) {
+        setAlpha(alpha);
+        setLambda(lambda);
+        if (reservoirSize < 0) throw new IllegalArgumentException(String.format("reservoir size (%d) cannot be less than 0", reservoirSize));
+        if (replayPerWord < 0) throw new IllegalArgumentException(String.format("replayed words per new word (%d) cannot be less than 0", replayPerWord));
+        this.languageClassifier = languageClassifier;
+        this.trainer = NetworkTrainer.create(languageClassifier.getNetworkWeights(), TrainingPrecision.DOUBLE);
+        Language[] languages = languageClassifier.getLanguages();
+        for (int i = 0; i < languages.length; i++) {
+            languageIndices.put(languages[i], i);
+        }
+        this.replayPerWord = replayPerWord;
+        this.random = random;
+        this.reservoirSize = reservoirSize;
+        this.reservoir = new ArrayList<>(reservoirSize);
+        for (WordAndLanguage wordAndLanguage : languageClassifier.getAllWordsDataSet().words()) {
+            offer(wordAndLanguage);
+        }
+    }
+
+    public void update(Language language, String... words) {
+        update(language, 1, words);
+    }
+
+    /**
+     * Trains {@code passes} mini-batches of the new words, each with its own replayed words, then offers the new words
+     * to the reservoir once, so repeated passes do not skew the reservoir's uniform sample towards them.
+     */
+    public void update(Language language, int passes, String... words) {
+        if (!languageIndices.containsKey(language)) {
+            throw new IllegalArgumentException("Invalid language (" + language.getName() + ") for classifier");
+        }
+        if (passes <= 0) throw new IllegalArgumentException(String.format("number of passes (%d) must be greater than 0", passes));
+        if (words.length == 0) {
+            return;
+        }
+        List<WordAndLanguage> newWords = new ArrayList<>(words.length);
+        for (String word : words) {
+            newWords.add(new WordAndLanguage(word, languageIndices, language));
+        }
+        // Replay is drawn before the new words enter the reservoir, so they are not replayed in their own batches
+        for (int pass = 0; pass < passes; pass++) {
+            List<WordAndLanguage> batch = new ArrayList<>(words.length * (replayPerWord + 1));
+            batch.addAll(newWords);
+            for (int i = words.length * replayPerWord; i > 0 && !reservoir.isEmpty(); i--) {
+                batch.add(reservoir.get(random.nextInt(reservoir.size())));
+            }
+            trainer.trainBatch(encode(batch), alpha, lambda);
+            updates++;
+        }
+        for (WordAndLanguage wordAndLanguage : newWords) {
+            offer(wordAndLanguage);
+        }
+    }
+
+    /**
+     * Copies the fine-tuned weights into the classifier.
+     */
+    public void apply() {
+        languageClassifier.setNetworkWeights(trainer.toWeights());
+    }
+
+    public void setAlpha(double alpha) {
+        if (alpha <= 0) throw new IllegalArgumentException(String.format("learning rate (%f) must be greater than 0", alpha));
+        this.alpha = alpha;
+    }
+
+    public void setLambda(double lambda) {
+        if (lambda < 0) throw new IllegalArgumentException(String.format("regularization parameter (%f) cannot be less than 0", lambda));
+        this.lambda = lambda;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public double getLambda() {
+        return lambda;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public int getReservoirSize() {
+        return reservoir.size();
+    }
+
+    /**
+     * Algorithm R: after {@code seen} offers, every word offered so far is in the reservoir with equal probability.
+     */
+    private void offer(WordAndLanguage wordAndLanguage) {
+        seen++;
+        if (reservoir.size() < reservoirSize) {
+            reservoir.add(wordAndLanguage);
+        } else if (reservoirSize > 0) {
+            long index = (long) (random.nextDouble() * seen);
+            if (index < reservoirSize) {
+                reservoir.set((int) index, wordAndLanguage);
+            }
+        }
+    }
+
+    private SparseBatch encode(List<WordAndLanguage> words) {
+        FeatureExtractor featureExtractor = languageClassifier.getFeatureExtractor();
+        int outputs = languageIndices.size();
+        int rows = words.size();
+        int[] rowStarts = new int[rows + 1];
+        int[] columns = new int[rows * featureExtractor.maxActiveFeatures()];
+        boolean[] targets = new boolean[rows * outputs];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            WordAndLanguage wordAndLanguage = words.get(row);
+            rowStarts[row] = count;
+            count += featureExtractor.extract(wordAndLanguage.getWord(), columns, count);
+            BitSet languages = wordAndLanguage.getLanguageIndices();
+            for (int i = languages.nextSetBit(0); i >= 0 && i < outputs; i = languages.nextSetBit(i + 1)) {
+                targets[row * outputs + i] = true;
+            }
+        }
+        rowStarts[rows] = count;
+        return new SparseBatch(rows, outputs, rowStarts, columns, targets);
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+
+public class ParagraphResult {
+
+    private final Map<Language, Double> scores;
+    private final int wordsConsumed;
+    private final int totalWords;
+    private final double margin;
+    private final boolean stoppedEarly;
+
+    ParagraphResult(Map<Language, Double> scores, int wordsConsumed, int totalWords, double margin, boolean stoppedEarly) {
+        this.scores = Collections.unmodifiableMap(scores);
+        this.wordsConsumed = wordsConsumed;
+        this.totalWords = totalWords;
+        this.margin = margin;
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    public Language getPrediction() {
+        return scores.entrySet().stream()
+                .max(Comparator.comparingDouble(Map.Entry::getValue))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    public Map<Language, Double> getScores() {
+        return scores;
+    }
+
+    public int getWordsConsumed() {
+        return wordsConsumed;
+    }
+
+    public int getTotalWords() {
+        return totalWords;
+    }
+
+    public double getMargin() {
+        return margin;
+    }
+
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.chen.wentao.languageclassifier;
+
+final class PositionalFeatureExtractor implements FeatureExtractor {
+
+    private static final long serialVersionUID = -4179602873413955172L;
+
+    private final int inputLettersCount;
+    private final int maxWordLength;
+    private final LetterEncoder letterEncoder;
+
+    PositionalFeatureExtractor(int inputLettersCount, int maxWordLength, LetterEncoder letterEncoder) {
+        this.inputLettersCount = inputLettersCount;
+        this.maxWordLength = maxWordLength;
+        this.letterEncoder = letterEncoder;
+    }
+
+    @Override
+    public int numFeatures() {
+        return (inputLettersCount + 1) * maxWordLength;
+    }
+
+    @Override
+    public int maxActiveFeatures() {
+        return maxWordLength;
+    }
+
+    @Override
+    public int maxWordLength() {
+        return maxWordLength;
+    }
+
+    @Override
+    public int extract(String word, int[] columns, int offset) {
+        return LanguageWordsDataSet.setDataToColumns(inputLettersCount, maxWordLength, letterEncoder, word, columns, offset);
+    }
+
+    @Override
+    public FeatureExtractor withMaxWordLength(int maxWordLength) {
+        return new PositionalFeatureExtractor(inputLettersCount, maxWordLength, letterEncoder);
+    }
+
+    int getInputLettersCount() {
+        return inputLettersCount;
+    }
+
+    LetterEncoder getLetterEncoder() {
+        return letterEncoder;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("positional (%d letters x %d positions)", inputLettersCount + 1, maxWordLength);
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.chen.wentao.languageclassifier;
+
+public class QuantizationReport {
+
+    private final int words;
+    private final double referenceAccuracy;
+    private final double quantizedAccuracy;
+    private final double agreement;
+    private final double meanAbsoluteOutputDelta;
+    private final double maxAbsoluteOutputDelta;
+    private final long referenceBytes;
+    private final long quantizedBytes;
+
+    private QuantizationReport(int words, double referenceAccuracy, double quantizedAccuracy, double agreement,
+                               double meanAbsoluteOutputDelta, double maxAbsoluteOutputDelta, long referenceBytes, long quantizedBytes) {
+        this.words = words;
+        this.referenceAccuracy = referenceAccuracy;
+        this.quantizedAccuracy = quantizedAccuracy;
+        this.agreement = agreement;
+        this.meanAbsoluteOutputDelta = meanAbsoluteOutputDelta;
+        this.maxAbsoluteOutputDelta = maxAbsoluteOutputDelta;
+        this.referenceBytes = referenceBytes;
+        this.quantizedBytes = quantizedBytes;
+    }
+
+    static QuantizationReport compare(LanguageClassifier reference, QuantizedLanguageClassifier quantized, LanguageWordsDataSet dataSet, int testWordsCount) {
+        int words = Math.min(testWordsCount, dataSet.numWords());
+        int referenceCorrect = 0;
+        int quantizedCorrect = 0;
+        int agreed = 0;
+        double totalDelta = 0;
+        double maxDelta = 0;
+        for (int w = 0; w < words; w++) {
+            String word = dataSet.wordAt(w);
+            double[] referenceOutput = reference.referenceOutputs(word);
+            float[] quantizedOutput = quantized.processOutputs(word);
+            int referencePrediction = 0;
+            int quantizedPrediction = 0;
+            for (int i = 0; i < referenceOutput.length; i++) {
+                double delta = Math.abs(referenceOutput[i] - quantizedOutput[i]);
+                totalDelta += delta;
+                maxDelta = Math.max(maxDelta, delta);
+                if (referenceOutput[i] > referenceOutput[referencePrediction]) {
+                    referencePrediction = i;
+                }
+                if (quantizedOutput[i] > quantizedOutput[quantizedPrediction]) {
+                    quantizedPrediction = i;
+                }
+            }
+            if (dataSet.isWordInLanguage(w, referencePrediction)) {
+                referenceCorrect++;
+            }
+            if (dataSet.isWordInLanguage(w, quantizedPrediction)) {
+                quantizedCorrect++;
+            }
+            if (referencePrediction == quantizedPrediction) {
+                agreed++;
+            }
+        }
+        int outputs = words * reference.getLanguages().length;
+        long referenceBytes = 8L * reference.getNetworkWeights().numWeights();
+        return new QuantizationReport(words, words > 0 ? (double) referenceCorrect / words : 0, words > 0 ? (double) quantizedCorrect / words : 0,
+                words > 0 ? (double) agreed / words : 0, outputs > 0 ? totalDelta / outputs : 0, maxDelta, referenceBytes, quantized.weightBytes());
+    }
+
+    public int getWords() {
+        return words;
+    }
+
+    public double getReferenceAccuracy() {
+        return referenceAccuracy;
+    }
+
+    public double getQuantizedAccuracy() {
+        return quantizedAccuracy;
+    }
+
+    public double getAccuracyDelta() {
+        return quantizedAccuracy - referenceAccuracy;
+    }
+
+    public double getAgreement() {
+        return agreement;
+    }
+
+    public double getMeanAbsoluteOutputDelta() {
+        return meanAbsoluteOutputDelta;
+    }
+
+    public double getMaxAbsoluteOutputDelta() {
+        return maxAbsoluteOutputDelta;
+    }
+
+    public long getReferenceBytes() {
+        return referenceBytes;
+    }
+
+    public long getQuantizedBytes() {
+        return quantizedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Words: %d%nAccuracy (double): %.6f%%%nAccuracy (quantized): %.6f%%%nAccuracy delta: %+.6f%%%n"
+                        + "Prediction agreement: %.6f%%%nOutput delta: mean %.3e, max %.3e%nWeights: %d bytes -> %d bytes (%.1fx smaller)%n",
+                words, referenceAccuracy * 100, quantizedAccuracy * 100, getAccuracyDelta() * 100, agreement * 100,
+                meanAbsoluteOutputDelta, maxAbsoluteOutputDelta, referenceBytes, quantizedBytes, (double) referenceBytes / Math.max(quantizedBytes, 1));
+    }
+}
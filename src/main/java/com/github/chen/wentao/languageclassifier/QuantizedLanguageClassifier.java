@@ -0,0 +1,230 @@
+package com.github.chen.wentao.languageclassifier;
+
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inference-only copy of a {@link LanguageClassifier} with single precision or 8-bit weights. The first layer is stored
+ * transposed, one contiguous row of hidden unit weights per input column, so a word is evaluated by summing the rows of
+ * its active one-hot columns instead of multiplying a mostly-zero input vector.
+ */
+public class QuantizedLanguageClassifier implements Serializable {
+
+    private static final long serialVersionUID = 3140954178826331506L;
+
+    public enum Precision {
+        FLOAT32, INT8
+    }
+
+    private final int inputLettersCount;
+    private final int maxWordLength;
+    private final LetterEncoder letterEncoder;
+    private final Language[] languages;
+    private final Precision precision;
+    private final int hiddenUnits;
+    // (inputs + 1) x hiddenUnits, row 0 holds the hidden biases
+    private final float[] firstLayer;
+    private final byte[] firstLayerQuantized;
+    private final float[] firstLayerScales;
+    // outputs x (hiddenUnits + 1), column 0 holds the output biases
+    private final float[] secondLayer;
+    private transient volatile InferenceKernel kernel;
+    // Not final so classifiers saved before feature extractors existed get the positional encoding when read
+    private FeatureExtractor featureExtractor;
+
+    private QuantizedLanguageClassifier(LanguageClassifier languageClassifier, NetworkWeights weights, Precision precision) {
+        if (weights.numLayers() != 2) throw new IllegalArgumentException("Only single hidden layer networks can be quantized. Layers: " + weights.numLayers());
+        this.inputLettersCount = languageClassifier.getInputLettersCount();
+        this.maxWordLength = languageClassifier.getMaxWordLength();
+        this.letterEncoder = languageClassifier.getLetterEncoder();
+        this.featureExtractor = languageClassifier.getFeatureExtractor();
+        this.languages = languageClassifier.getLanguages();
+        this.precision = precision;
+        this.hiddenUnits = weights.rows(0);
+        int inputRows = weights.cols(0);
+        double[] first = weights.layer(0);
+        float[] transposed = new float[inputRows * hiddenUnits];
+        for (int j = 0; j < hiddenUnits; j++) {
+            for (int col = 0; col < inputRows; col++) {
+                transposed[col * hiddenUnits + j] = (float) first[j * inputRows + col];
+            }
+        }
+        if (precision == Precision.INT8) {
+            this.firstLayer = null;
+            this.firstLayerQuantized = new byte[transposed.length];
+            this.firstLayerScales = new float[inputRows];
+            for (int row = 0; row < inputRows; row++) {
+                float maxAbs = 0;
+                for (int j = 0; j < hiddenUnits; j++) {
+                    maxAbs = Math.max(maxAbs, Math.abs(transposed[row * hiddenUnits + j]));
+                }
+                float scale = maxAbs > 0 ? maxAbs / 127 : 1;
+                firstLayerScales[row] = scale;
+                for (int j = 0; j < hiddenUnits; j++) {
+                    firstLayerQuantized[row * hiddenUnits + j] = (byte) Math.round(transposed[row * hiddenUnits + j] / scale);
+                }
+            }
+        } else {
+            this.firstLayer = transposed;
+            this.firstLayerQuantized = null;
+            this.firstLayerScales = null;
+        }
+        double[] second = weights.layer(1);
+        this.secondLayer = new float[second.length];
+        for (int i = 0; i < second.length; i++) {
+            secondLayer[i] = (float) second[i];
+        }
+    }
+
+    public static QuantizedLanguageClassifier quantize(LanguageClassifier languageClassifier, Precision precision) {
+        return new QuantizedLanguageClassifier(languageClassifier, languageClassifier.getNetworkWeights(), precision);
+    }
+
+    public Map<Language, Double> process(String input) {
+        float[] output = processOutputs(input);
+        Map<Language, Double> results = new HashMap<>();
+        for (int i = 0; i < languages.length; i++) {
+            results.put(languages[i], (double) output[i]);
+        }
+        return results;
+    }
+
+    public Language predict(String input) {
+        return languages[predictIndex(input)];
+    }
+
+    public int predictIndex(String input) {
+        float[] output = processOutputs(input);
+        int best = 0;
+        for (int i = 1; i < output.length; i++) {
+            if (output[i] > output[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    float[] processOutputs(String input) {
+        int[] columns = new int[featureExtractor.maxActiveFeatures()];
+        int count = featureExtractor.extract(input, columns, 0);
+        float[] hidden = new float[hiddenUnits];
+        if (precision == Precision.INT8) {
+            for (int j = 0; j < hiddenUnits; j++) {
+                hidden[j] = firstLayerQuantized[j] * firstLayerScales[0];
+            }
+            for (int k = 0; k < count; k++) {
+                int row = columns[k] + 1;
+                int base = row * hiddenUnits;
+                float scale = firstLayerScales[row];
+                for (int j = 0; j < hiddenUnits; j++) {
+                    hidden[j] += firstLayerQuantized[base + j] * scale;
+                }
+            }
+        } else {
+            float[] output = new float[languages.length];
+            getKernel().forward(columns, count, hidden, output);
+            return output;
+        }
+        for (int j = 0; j < hiddenUnits; j++) {
+            hidden[j] = sigmoid(hidden[j]);
+        }
+        float[] output = new float[languages.length];
+        int stride = hiddenUnits + 1;
+        for (int i = 0; i < languages.length; i++) {
+            int base = i * stride;
+            float z = secondLayer[base];
+            for (int j = 0; j < hiddenUnits; j++) {
+                z += secondLayer[base + 1 + j] * hidden[j];
+            }
+            output[i] = sigmoid(z);
+        }
+        return output;
+    }
+
+    private InferenceKernel getKernel() {
+        InferenceKernel kernel = this.kernel;
+        if (kernel == null) {
+            kernel = InferenceKernel.create(hiddenUnits, languages.length, firstLayer, secondLayer);
+            this.kernel = kernel;
+        }
+        return kernel;
+    }
+
+    public String getKernelName() {
+        return precision == Precision.INT8 ? "scalar (int8)" : getKernel().getName();
+    }
+
+    private static float sigmoid(float z) {
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    public double accuracy(int testWordsCount, LanguageWordsDataSet dataSet) {
+        return dataSet.accuracy(this::predictIndex, testWordsCount);
+    }
+
+    public QuantizationReport compare(LanguageClassifier reference, LanguageWordsDataSet dataSet, int testWordsCount) {
+        return QuantizationReport.compare(reference, this, dataSet, testWordsCount);
+    }
+
+    public long weightBytes() {
+        long firstLayerBytes = precision == Precision.INT8
+                ? firstLayerQuantized.length + 4L * firstLayerScales.length
+                : 4L * firstLayer.length;
+        return firstLayerBytes + 4L * secondLayer.length;
+    }
+
+    public void saveToFile(String fileName) throws IOException {
+        try (FileOutputStream fileOutputStream = new FileOutputStream(fileName);
+             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream)) {
+            objectOutputStream.writeObject(this);
+        }
+    }
+
+    public static QuantizedLanguageClassifier loadFromFile(String fileName) throws IOException {
+        try (FileInputStream fileInputStream = new FileInputStream(fileName);
+             ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
+            return (QuantizedLanguageClassifier) objectInputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public Language[] getLanguages() {
+        return languages;
+    }
+
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    public int getInputLettersCount() {
+        return inputLettersCount;
+    }
+
+    public LetterEncoder getLetterEncoder() {
+        return letterEncoder;
+    }
+
+    public FeatureExtractor getFeatureExtractor() {
+        return featureExtractor;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (featureExtractor == null) {
+            featureExtractor = FeatureExtractor.positional(inputLettersCount, maxWordLength, letterEncoder);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.chen.wentao.languageclassifier;
+
+final class ScalarInferenceKernel implements InferenceKernel {
+
+    private final int hiddenUnits;
+    private final int outputs;
+    private final float[] firstLayer;
+    // (hiddenUnits + 1) x outputs, row 0 holds the output biases, so each hidden activation is consumed as soon as it
+    // is computed
+    private final float[] secondLayerTransposed;
+
+    ScalarInferenceKernel(int hiddenUnits, int outputs, float[] firstLayer, float[] secondLayer) {
+        this.hiddenUnits = hiddenUnits;
+        this.outputs = outputs;
+        this.firstLayer = firstLayer;
+        this.secondLayerTransposed = new float[(hiddenUnits + 1) * outputs];
+        for (int i = 0; i < outputs; i++) {
+            for (int j = 0; j <= hiddenUnits; j++) {
+                secondLayerTransposed[j * outputs + i] = secondLayer[i * (hiddenUnits + 1) + j];
+            }
+        }
+    }
+
+    @Override
+    public void forward(int[] columns, int count, float[] hidden, float[] output) {
+        System.arraycopy(firstLayer, 0, hidden, 0, hiddenUnits);
+        for (int k = 0; k < count; k++) {
+            int base = (columns[k] + 1) * hiddenUnits;
+            for (int j = 0; j < hiddenUnits; j++) {
+                hidden[j] += firstLayer[base + j];
+            }
+        }
+        System.arraycopy(secondLayerTransposed, 0, output, 0, outputs);
+        for (int j = 0; j < hiddenUnits; j++) {
+            float activation = sigmoid(hidden[j]);
+            int base = (j + 1) * outputs;
+            for (int i = 0; i < outputs; i++) {
+                output[i] += secondLayerTransposed[base + i] * activation;
+            }
+        }
+        for (int i = 0; i < outputs; i++) {
+            output[i] = sigmoid(output[i]);
+        }
+    }
+
+    private static float sigmoid(float z) {
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
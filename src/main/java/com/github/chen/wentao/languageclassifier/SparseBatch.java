@@ -0,0 +1,56 @@
+package com.github.chen.wentao.languageclassifier;
+
+/**
+ * Mini-batch of one-hot encoded words in compressed sparse row form: the active input columns of row {@code r} are
+ * {@code columns[rowStarts[r]]} to {@code columns[rowStarts[r + 1] - 1]}, each with value 1.
+ */
+final class SparseBatch {
+
+    private final int firstRow;
+    private final int rows;
+    private final int outputs;
+    private final int[] rowStarts;
+    private final int[] columns;
+    private final boolean[] targets;
+
+    SparseBatch(int rows, int outputs, int[] rowStarts, int[] columns, boolean[] targets) {
+        this(0, rows, outputs, rowStarts, columns, targets);
+    }
+
+    /**
+     * View of rows {@code firstRow} to {@code firstRow + rows - 1} of larger arrays, so batches of an already encoded
+     * data set share its storage.
+     */
+    SparseBatch(int firstRow, int rows, int outputs, int[] rowStarts, int[] columns, boolean[] targets) {
+        this.firstRow = firstRow;
+        this.rows = rows;
+        this.outputs = outputs;
+        this.rowStarts = rowStarts;
+        this.columns = columns;
+        this.targets = targets;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int outputs() {
+        return outputs;
+    }
+
+    int rowStart(int row) {
+        return rowStarts[firstRow + row];
+    }
+
+    int rowEnd(int row) {
+        return rowStarts[firstRow + row + 1];
+    }
+
+    int column(int index) {
+        return columns[index];
+    }
+
+    boolean target(int row, int output) {
+        return targets[(firstRow + row) * outputs + output];
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.chen.wentao.languageclassifier;
+
+interface SparseBatchStream {
+
+    int numBatches();
+
+    SparseBatch getBatch(int batchIndex);
+}
@@ -0,0 +1,196 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.Arrays;
+
+/**
+ * Mini-batch gradient descent for the single hidden layer sigmoid network with logistic cost, using the fact that every
+ * input row is one-hot per letter position. Only first layer columns active in a batch are read, get gradients and are
+ * updated. The L2 weight decay the other columns would receive is accumulated as a running log scale and applied when a
+ * column is next touched or the weights are exported, so an iteration costs O(batch size * max word length * hidden)
+ * instead of O(batch size * inputs * hidden). Weights, gradients, activations and deltas are stored and computed in the
+ * given precision; decay bookkeeping and cost sums stay in double precision.
+ */
+final class SparseNetworkTrainer implements NetworkTrainer {
+
+    private final int inputs;
+    private final int hiddenUnits;
+    private final int outputs;
+    private final TrainingPrecision precision;
+    // (inputs + 1) x hiddenUnits, row 0 holds the hidden biases
+    private final WeightArray firstLayer;
+    // outputs x (hiddenUnits + 1), column 0 holds the output biases
+    private final WeightArray secondLayer;
+    private final WeightArray firstLayerGradient;
+    private final WeightArray secondLayerGradient;
+    // Log of the product of all decay factors applied so far, and its value when each input row was last brought up to date
+    private double decayLog = 0;
+    private final double[] rowDecayLog;
+    private final int[] touchedStamp;
+    private final int[] touchedRows;
+    private int iteration = 0;
+
+    SparseNetworkTrainer(NetworkWeights weights, TrainingPrecision precision) {
+        if (weights.numLayers() != 2) throw new IllegalArgumentException("Only single hidden layer networks are supported. Layers: " + weights.numLayers());
+        this.hiddenUnits = weights.rows(0);
+        this.inputs = weights.cols(0) - 1;
+        this.outputs = weights.rows(1);
+        this.precision = precision;
+        this.firstLayer = WeightArray.create(precision, (inputs + 1) * hiddenUnits);
+        double[] first = weights.layer(0);
+        for (int j = 0; j < hiddenUnits; j++) {
+            for (int row = 0; row <= inputs; row++) {
+                firstLayer.set(row * hiddenUnits + j, first[j * (inputs + 1) + row]);
+            }
+        }
+        double[] second = weights.layer(1);
+        this.secondLayer = WeightArray.create(precision, second.length);
+        for (int i = 0; i < second.length; i++) {
+            secondLayer.set(i, second[i]);
+        }
+        this.firstLayerGradient = WeightArray.create(precision, firstLayer.length());
+        this.secondLayerGradient = WeightArray.create(precision, secondLayer.length());
+        this.rowDecayLog = new double[inputs + 1];
+        this.touchedStamp = new int[inputs + 1];
+        Arrays.fill(touchedStamp, -1);
+        this.touchedRows = new int[inputs + 1];
+    }
+
+    @Override
+    public void trainBatch(SparseBatch batch, double alpha, double lambda) {
+        int m = batch.rows();
+        if (m == 0) {
+            return;
+        }
+        int stamp = iteration++;
+        int touchedCount = 0;
+        for (int index = batch.rowStart(0); index < batch.rowEnd(m - 1); index++) {
+            int row = batch.column(index) + 1;
+            if (touchedStamp[row] != stamp) {
+                touchedStamp[row] = stamp;
+                touchedRows[touchedCount++] = row;
+                catchUp(row);
+                firstLayerGradient.clear(row * hiddenUnits, (row + 1) * hiddenUnits);
+            }
+        }
+        firstLayerGradient.clear(0, hiddenUnits);
+        secondLayerGradient.clear(0, secondLayerGradient.length());
+
+        WeightArray hidden = WeightArray.create(precision, hiddenUnits);
+        WeightArray outputDelta = WeightArray.create(precision, outputs);
+        WeightArray hiddenDelta = WeightArray.create(precision, hiddenUnits);
+        int stride = hiddenUnits + 1;
+        for (int r = 0; r < m; r++) {
+            forwardHidden(batch, r, hidden);
+            for (int i = 0; i < outputs; i++) {
+                double z = secondLayer.get(i * stride) + secondLayer.dot(i * stride + 1, hidden);
+                outputDelta.set(i, sigmoid(z) - (batch.target(r, i) ? 1 : 0));
+            }
+            hiddenDelta.clear(0, hiddenUnits);
+            for (int i = 0; i < outputs; i++) {
+                double delta = outputDelta.get(i);
+                int base = i * stride;
+                secondLayerGradient.set(base, secondLayerGradient.get(base) + delta);
+                secondLayerGradient.add(base + 1, delta, hidden);
+                secondLayer.addTo(base + 1, delta, hiddenDelta);
+            }
+            hiddenDelta.multiplySigmoidGradient(hidden);
+            firstLayerGradient.add(0, 1, hiddenDelta);
+            for (int index = batch.rowStart(r); index < batch.rowEnd(r); index++) {
+                firstLayerGradient.add((batch.column(index) + 1) * hiddenUnits, 1, hiddenDelta);
+            }
+        }
+
+        double step = alpha / m;
+        double decay = 1 - alpha * lambda / m;
+        firstLayer.update(0, hiddenUnits, 1, step, firstLayerGradient);
+        if (decay <= 0) {
+            // The decay is too strong to be tracked as a log scale, apply it to every column eagerly
+            flush();
+            firstLayer.scale(hiddenUnits, firstLayer.length(), decay);
+        } else {
+            decayLog += Math.log(decay);
+        }
+        double rowDecay = decay <= 0 ? 1 : decay;
+        for (int t = 0; t < touchedCount; t++) {
+            int row = touchedRows[t];
+            firstLayer.update(row * hiddenUnits, (row + 1) * hiddenUnits, rowDecay, step, firstLayerGradient);
+            rowDecayLog[row] = decayLog;
+        }
+        for (int i = 0; i < outputs; i++) {
+            int base = i * stride;
+            secondLayer.update(base, base + 1, 1, step, secondLayerGradient);
+            secondLayer.update(base + 1, base + stride, decay, step, secondLayerGradient);
+        }
+    }
+
+    @Override
+    public double logLoss(SparseBatch batch) {
+        double cost = 0;
+        WeightArray hidden = WeightArray.create(precision, hiddenUnits);
+        int stride = hiddenUnits + 1;
+        for (int r = 0; r < batch.rows(); r++) {
+            forwardHidden(batch, r, hidden);
+            for (int i = 0; i < outputs; i++) {
+                double z = secondLayer.get(i * stride) + secondLayer.dot(i * stride + 1, hidden);
+                double h = Math.min(Math.max(sigmoid(z), LanguageClassifier.MIN_PROBABILITY), 1 - LanguageClassifier.MIN_PROBABILITY);
+                cost -= batch.target(r, i) ? Math.log(h) : Math.log(1 - h);
+            }
+        }
+        return cost;
+    }
+
+    @Override
+    public double squaredWeights() {
+        flush();
+        double squares = firstLayer.sumOfSquares(hiddenUnits, firstLayer.length());
+        int stride = hiddenUnits + 1;
+        for (int i = 0; i < outputs; i++) {
+            squares += secondLayer.sumOfSquares(i * stride + 1, (i + 1) * stride);
+        }
+        return squares;
+    }
+
+    private void forwardHidden(SparseBatch batch, int r, WeightArray hidden) {
+        firstLayer.copyTo(0, hidden);
+        for (int index = batch.rowStart(r); index < batch.rowEnd(r); index++) {
+            int row = batch.column(index) + 1;
+            catchUp(row);
+            firstLayer.addTo(row * hiddenUnits, 1, hidden);
+        }
+        hidden.sigmoid();
+    }
+
+    private void catchUp(int row) {
+        double pending = decayLog - rowDecayLog[row];
+        if (pending != 0) {
+            firstLayer.scale(row * hiddenUnits, (row + 1) * hiddenUnits, Math.exp(pending));
+            rowDecayLog[row] = decayLog;
+        }
+    }
+
+    private void flush() {
+        for (int row = 1; row <= inputs; row++) {
+            catchUp(row);
+        }
+    }
+
+    @Override
+    public NetworkWeights toWeights() {
+        flush();
+        double[] first = new double[firstLayer.length()];
+        for (int j = 0; j < hiddenUnits; j++) {
+            for (int row = 0; row <= inputs; row++) {
+                first[j * (inputs + 1) + row] = firstLayer.get(row * hiddenUnits + j);
+            }
+        }
+        double[] second = new double[secondLayer.length()];
+        for (int i = 0; i < second.length; i++) {
+            second[i] = secondLayer.get(i);
+        }
+        return new NetworkWeights(new int[]{hiddenUnits, outputs}, new int[]{inputs + 1, hiddenUnits + 1}, new double[][]{first, second});
+    }
+
+    private static double sigmoid(double z) {
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.chen.wentao.languageclassifier;
+
+final class SparseTrainingEngine implements TrainingEngine {
+
+    private final LanguageClassifier languageClassifier;
+    private final SparseBatchStream batchGenerator;
+    private final TrainingPrecision precision;
+    private final double alpha;
+    private final double lambda;
+    private NetworkTrainer trainer;
+
+    SparseTrainingEngine(LanguageClassifier languageClassifier, LanguageWordsDataSet dataSet, TrainingOptions options, BatchSchedule schedule) {
+        this.languageClassifier = languageClassifier;
+        this.batchGenerator = dataSet.buildSparseBatchGenerator(languageClassifier.getFeatureExtractor(), schedule);
+        this.precision = options.getPrecision();
+        this.alpha = options.getAlpha();
+        this.lambda = options.getLambda();
+        this.trainer = NetworkTrainer.create(languageClassifier.getNetworkWeights(), precision);
+    }
+
+    @Override
+    public void train(int fromIteration, int toIteration) {
+        for (int batchIndex = fromIteration; batchIndex < toIteration; batchIndex++) {
+            trainer.trainBatch(batchGenerator.getBatch(batchIndex), alpha, lambda);
+        }
+    }
+
+    @Override
+    public double cost(LanguageWordsDataSet dataSet) {
+        return trainer.cost(dataSet.buildSparseBatchGenerator(languageClassifier.getFeatureExtractor(), 1000), 0);
+    }
+
+    @Override
+    public NetworkWeights snapshot() {
+        return trainer.toWeights();
+    }
+
+    @Override
+    public void restore(NetworkWeights weights) {
+        trainer = NetworkTrainer.create(weights, precision);
+    }
+
+    @Override
+    public void sync() {
+        languageClassifier.setNetworkWeights(trainer.toWeights());
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrainingBenchmark {
+
+    private TrainingBenchmark() {
+    }
+
+    public static List<ConvergencePoint> comparePrecision(LanguageClassifier languageClassifier, LanguageWordsDataSet trainingDataSet, LanguageWordsDataSet cvDataSet,
+                                                          double alpha, double lambda, int numIterations, int batchSize, int checkpoints) {
+        if (checkpoints <= 0) throw new IllegalArgumentException(String.format("checkpoints (%d) must be greater than 0", checkpoints));
+        FeatureExtractor featureExtractor = languageClassifier.getFeatureExtractor();
+        SparseBatchStream trainingBatches = trainingDataSet.buildSparseBatchGenerator(featureExtractor, batchSize);
+        SparseBatchStream cvBatches = cvDataSet.buildSparseBatchGenerator(featureExtractor, 1000);
+
+        // Both trainers start from the same weights and see the same batches, so the only difference is precision
+        NetworkWeights initialWeights = languageClassifier.getNetworkWeights();
+        NetworkTrainer doubleTrainer = NetworkTrainer.create(initialWeights, TrainingPrecision.DOUBLE);
+        NetworkTrainer floatTrainer = NetworkTrainer.create(initialWeights, TrainingPrecision.FLOAT);
+        long doubleNanos = 0;
+        long floatNanos = 0;
+        List<ConvergencePoint> points = new ArrayList<>();
+        points.add(new ConvergencePoint(0, doubleTrainer.cost(cvBatches, lambda), floatTrainer.cost(cvBatches, lambda), 0, 0));
+        int iteration = 0;
+        for (int checkpoint = 1; checkpoint <= checkpoints; checkpoint++) {
+            int end = (int) ((long) numIterations * checkpoint / checkpoints);
+            long startTime = System.nanoTime();
+            for (int i = iteration; i < end; i++) {
+                doubleTrainer.trainBatch(trainingBatches.getBatch(i), alpha, lambda);
+            }
+            doubleNanos += System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int i = iteration; i < end; i++) {
+                floatTrainer.trainBatch(trainingBatches.getBatch(i), alpha, lambda);
+            }
+            floatNanos += System.nanoTime() - startTime;
+            iteration = end;
+            points.add(new ConvergencePoint(iteration, doubleTrainer.cost(cvBatches, lambda), floatTrainer.cost(cvBatches, lambda), doubleNanos, floatNanos));
+        }
+        return points;
+    }
+
+    public static class ConvergencePoint {
+        private final int iteration;
+        private final double doubleCost;
+        private final double floatCost;
+        private final long doubleNanos;
+        private final long floatNanos;
+
+        private ConvergencePoint(int iteration, double doubleCost, double floatCost, long doubleNanos, long floatNanos) {
+            this.iteration = iteration;
+            this.doubleCost = doubleCost;
+            this.floatCost = floatCost;
+            this.doubleNanos = doubleNanos;
+            this.floatNanos = floatNanos;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public double getDoubleCost() {
+            return doubleCost;
+        }
+
+        public double getFloatCost() {
+            return floatCost;
+        }
+
+        public long getDoubleNanos() {
+            return doubleNanos;
+        }
+
+        public long getFloatNanos() {
+            return floatNanos;
+        }
+    }
+}
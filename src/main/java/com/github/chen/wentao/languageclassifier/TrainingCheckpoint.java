@@ -0,0 +1,72 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+final class TrainingCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 4620175383000939232L;
+
+    static final String FILE_NAME = "checkpoint.bin";
+
+    private final int iteration;
+    private final Random random;
+    private final NetworkWeights weights;
+
+    TrainingCheckpoint(int iteration, Random random, NetworkWeights weights) {
+        this.iteration = iteration;
+        this.random = random;
+        this.weights = weights;
+    }
+
+    /**
+     * Writes to a temporary file first and renames it over the previous checkpoint, so a crash mid-write never leaves a
+     * truncated checkpoint behind.
+     */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, FILE_NAME, ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporary);
+                 ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+                objectOutputStream.writeObject(this);
+            }
+            Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static TrainingCheckpoint read(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (InputStream inputStream = Files.newInputStream(file);
+             ObjectInputStream objectInputStream = new ObjectInputStream(inputStream)) {
+            return (TrainingCheckpoint) objectInputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    int getIteration() {
+        return iteration;
+    }
+
+    Random getRandom() {
+        return random;
+    }
+
+    NetworkWeights getWeights() {
+        return weights;
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.chen.wentao.languageclassifier;
+
+/**
+ * Runs training iterations for a {@link TrainingSession} and gives it access to the weights in between, independent of
+ * whether the dense network or a sparse trainer does the work.
+ */
+interface TrainingEngine {
+
+    void train(int fromIteration, int toIteration);
+
+    double cost(LanguageWordsDataSet dataSet);
+
+    NetworkWeights snapshot();
+
+    void restore(NetworkWeights weights);
+
+    /**
+     * Makes the classifier's network reflect the current weights.
+     */
+    void sync();
+}
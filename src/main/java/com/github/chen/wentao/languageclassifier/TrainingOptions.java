@@ -0,0 +1,144 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+public class TrainingOptions {
+
+    private final double alpha;
+    private final int numIterations;
+    private double lambda = 0;
+    private int batchSize = 1;
+    private BatchOrder batchOrder = BatchOrder.FIXED;
+    private boolean sparse = false;
+    private TrainingPrecision precision = TrainingPrecision.DOUBLE;
+    private int preBatchEventCount = 0;
+    private IntConsumer preBatchEvent = batchIndex -> {
+    };
+    private EarlyStopping earlyStopping;
+    private CheckpointPolicy checkpointPolicy;
+    private boolean resume = false;
+    private Random random = new Random();
+
+    public TrainingOptions(double alpha, int numIterations) {
+        if (alpha <= 0) throw new IllegalArgumentException(String.format("learning rate (%f) must be greater than 0", alpha));
+        if (numIterations <= 0) throw new IllegalArgumentException(String.format("number of iterations (%d) must be greater than 0", numIterations));
+        this.alpha = alpha;
+        this.numIterations = numIterations;
+    }
+
+    public TrainingOptions lambda(double lambda) {
+        if (lambda < 0) throw new IllegalArgumentException(String.format("regularization parameter (%f) cannot be less than 0", lambda));
+        this.lambda = lambda;
+        return this;
+    }
+
+    public TrainingOptions batchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException(String.format("batch size (%d) must be greater than 0", batchSize));
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public TrainingOptions sparse(boolean sparse) {
+        this.sparse = sparse;
+        return this;
+    }
+
+    public TrainingOptions precision(TrainingPrecision precision) {
+        this.precision = precision;
+        return this;
+    }
+
+    public TrainingOptions preBatchEvent(int preBatchEventCount, IntConsumer preBatchEvent) {
+        this.preBatchEventCount = Math.max(preBatchEventCount, 0);
+        this.preBatchEvent = preBatchEvent;
+        return this;
+    }
+
+    public TrainingOptions earlyStopping(EarlyStopping earlyStopping) {
+        this.earlyStopping = earlyStopping;
+        return this;
+    }
+
+    public TrainingOptions batchOrder(BatchOrder batchOrder) {
+        this.batchOrder = batchOrder;
+        return this;
+    }
+
+    public TrainingOptions checkpoint(CheckpointPolicy checkpointPolicy) {
+        this.checkpointPolicy = checkpointPolicy;
+        return this;
+    }
+
+    /**
+     * Continue from the checkpoint in the checkpoint directory, if one exists, instead of starting at iteration 0.
+     */
+    public TrainingOptions resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Source of randomness for the training loop, such as the batch order. Its state at the start of training is stored
+     * with every checkpoint and restored on resume.
+     */
+    public TrainingOptions random(Random random) {
+        this.random = random;
+        return this;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public int getNumIterations() {
+        return numIterations;
+    }
+
+    public double getLambda() {
+        return lambda;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return whether the sparse trainer is used, which is always the case for single precision training
+     */
+    public boolean isSparse() {
+        return sparse || precision == TrainingPrecision.FLOAT;
+    }
+
+    public TrainingPrecision getPrecision() {
+        return precision;
+    }
+
+    public int getPreBatchEventCount() {
+        return preBatchEventCount;
+    }
+
+    public IntConsumer getPreBatchEvent() {
+        return preBatchEvent;
+    }
+
+    public EarlyStopping getEarlyStopping() {
+        return earlyStopping;
+    }
+
+    public BatchOrder getBatchOrder() {
+        return batchOrder;
+    }
+
+    public CheckpointPolicy getCheckpointPolicy() {
+        return checkpointPolicy;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.chen.wentao.languageclassifier;
+
+/**
+ * Precision of network training. ml-lib's dense network only trains in double precision, so {@link #FLOAT} always uses
+ * the sparse trainer, which keeps weights, gradients, activations and deltas as floats.
+ */
+public enum TrainingPrecision {
+    DOUBLE, FLOAT
+}
@@ -0,0 +1,44 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TrainingResult {
+
+    private final int iterations;
+    private final boolean stoppedEarly;
+    private final int bestIteration;
+    private final double bestCost;
+    private final List<Double> cvCosts;
+
+    TrainingResult(int iterations, boolean stoppedEarly, int bestIteration, double bestCost, List<Double> cvCosts) {
+        this.iterations = iterations;
+        this.stoppedEarly = stoppedEarly;
+        this.bestIteration = bestIteration;
+        this.bestCost = bestCost;
+        this.cvCosts = Collections.unmodifiableList(cvCosts);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    /**
+     * @return the iteration whose weights were kept, or the last iteration when no early stopping was used
+     */
+    public int getBestIteration() {
+        return bestIteration;
+    }
+
+    public double getBestCost() {
+        return bestCost;
+    }
+
+    public List<Double> getCvCosts() {
+        return cvCosts;
+    }
+}
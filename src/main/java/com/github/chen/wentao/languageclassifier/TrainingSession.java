@@ -0,0 +1,151 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+final class TrainingSession {
+
+    private static final Logger LOGGER = Logger.getLogger(TrainingSession.class.getName());
+    // Iterations between clock checks when checkpoints are written on a time interval
+    private static final int TIME_CHECK_ITERATIONS = 16;
+
+    private final TrainingOptions options;
+    private final TrainingCheckpoint resumeCheckpoint;
+    // State of the random before anything is drawn from it; everything random in the session derives from it
+    private final Random initialRandom;
+    private final TrainingEngine engine;
+
+    TrainingSession(LanguageClassifier languageClassifier, LanguageWordsDataSet dataSet, TrainingOptions options) {
+        this.options = options;
+        this.resumeCheckpoint = options.getCheckpointPolicy() != null && options.isResume() ? readCheckpoint(options.getCheckpointPolicy()) : null;
+        Random random = resumeCheckpoint != null ? resumeCheckpoint.getRandom() : options.getRandom();
+        this.initialRandom = copy(random);
+        BatchSchedule schedule = BatchSchedule.create(dataSet, options.getBatchSize(), options.getBatchOrder(), random);
+        this.engine = options.isSparse()
+                ? new SparseTrainingEngine(languageClassifier, dataSet, options, schedule)
+                : new DenseTrainingEngine(languageClassifier, dataSet, options, schedule);
+    }
+
+    TrainingResult run() {
+        int numIterations = options.getNumIterations();
+        int eventInterval = options.getPreBatchEventCount() > 0 ? Math.max(numIterations / options.getPreBatchEventCount(), 1) : 0;
+        EarlyStopping earlyStopping = options.getEarlyStopping();
+        int evaluateEvery = earlyStopping != null ? earlyStopping.getEvaluateEvery() : 0;
+        CheckpointPolicy checkpointPolicy = options.getCheckpointPolicy();
+        int checkpointEvery = checkpointPolicy != null ? checkpointPolicy.getEveryBatches() : 0;
+        long checkpointEveryNanos = checkpointPolicy != null ? checkpointPolicy.getEveryNanos() : 0;
+
+        int iteration = 0;
+        if (resumeCheckpoint != null) {
+            engine.restore(resumeCheckpoint.getWeights());
+            iteration = resumeCheckpoint.getIteration();
+            int resumeIteration = iteration;
+            LOGGER.info(() -> "Resuming from checkpoint at iteration " + resumeIteration);
+        }
+        List<Double> cvCosts = new ArrayList<>();
+        NetworkWeights bestWeights = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestIteration = 0;
+        int evaluationsWithoutImprovement = 0;
+        boolean stoppedEarly = false;
+        try (CheckpointWriter checkpointWriter = checkpointPolicy != null ? new CheckpointWriter(checkpointPolicy.getDirectory()) : null) {
+            long lastCheckpointTime = System.nanoTime();
+            while (iteration < numIterations) {
+                if (eventInterval > 0 && iteration % eventInterval == 0) {
+                    engine.sync();
+                    options.getPreBatchEvent().accept(iteration);
+                }
+                int next = nextBoundary(iteration, eventInterval, numIterations);
+                next = nextBoundary(iteration, evaluateEvery, next);
+                next = nextBoundary(iteration, checkpointEvery, next);
+                next = nextBoundary(iteration, checkpointEveryNanos > 0 ? TIME_CHECK_ITERATIONS : 0, next);
+                engine.train(iteration, next);
+                iteration = next;
+
+                if (checkpointWriter != null) {
+                    long now = System.nanoTime();
+                    if ((checkpointEvery > 0 && iteration % checkpointEvery == 0) || (checkpointEveryNanos > 0 && now - lastCheckpointTime >= checkpointEveryNanos)) {
+                        checkpointWriter.submit(checkpoint(iteration));
+                        lastCheckpointTime = now;
+                    }
+                }
+
+                if (earlyStopping != null && (iteration % evaluateEvery == 0 || iteration == numIterations)) {
+                    double cost = engine.cost(earlyStopping.getCvDataSet());
+                    cvCosts.add(cost);
+                    if (cost < bestCost - earlyStopping.getMinImprovement()) {
+                        bestCost = cost;
+                        bestIteration = iteration;
+                        bestWeights = engine.snapshot();
+                        evaluationsWithoutImprovement = 0;
+                    } else if (++evaluationsWithoutImprovement >= earlyStopping.getPatience()) {
+                        stoppedEarly = iteration < numIterations;
+                        int stoppedIteration = iteration;
+                        LOGGER.info(() -> String.format("Stopping early at iteration %d, no improvement in %d evaluations", stoppedIteration, earlyStopping.getPatience()));
+                        break;
+                    }
+                }
+            }
+            if (bestWeights != null && bestIteration != iteration) {
+                engine.restore(bestWeights);
+            } else {
+                bestIteration = iteration;
+            }
+            if (checkpointWriter != null) {
+                checkpointWriter.submit(checkpoint(stoppedEarly ? numIterations : iteration));
+            }
+        }
+        engine.sync();
+        return new TrainingResult(iteration, stoppedEarly, bestIteration, cvCosts.isEmpty() ? Double.NaN : bestCost, cvCosts);
+    }
+
+    private static TrainingCheckpoint readCheckpoint(CheckpointPolicy checkpointPolicy) {
+        TrainingCheckpoint checkpoint;
+        try {
+            checkpoint = TrainingCheckpoint.read(checkpointPolicy.getDirectory());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (checkpoint == null) {
+            LOGGER.info(() -> "No checkpoint in " + checkpointPolicy.getDirectory() + ", starting from iteration 0");
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Snapshots everything needed to resume on the training thread; the weights are copied so the background writer
+     * never sees them change. The initial random is never drawn from, so it can be shared.
+     */
+    private TrainingCheckpoint checkpoint(int iteration) {
+        return new TrainingCheckpoint(iteration, initialRandom, engine.snapshot());
+    }
+
+    private static Random copy(Random random) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+                objectOutputStream.writeObject(random);
+            }
+            try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (Random) objectInputStream.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int nextBoundary(int iteration, int interval, int limit) {
+        if (interval <= 0) {
+            return limit;
+        }
+        return Math.min((iteration / interval + 1) * interval, limit);
+    }
+}
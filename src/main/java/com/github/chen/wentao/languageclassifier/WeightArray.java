@@ -0,0 +1,267 @@
+package com.github.chen.wentao.languageclassifier;
+
+import java.util.Arrays;
+
+/**
+ * Weight, gradient, activation and delta storage of a {@link SparseNetworkTrainer} in the chosen
+ * {@link TrainingPrecision}. Operations work on whole runs of elements so the trainer's loops stay inside one
+ * implementation, and compute in the array's precision: factors are rounded to it first. Arrays passed to an operation
+ * must have the same precision.
+ */
+abstract class WeightArray {
+
+    static WeightArray create(TrainingPrecision precision, int length) {
+        return precision == TrainingPrecision.FLOAT ? new FloatWeightArray(length) : new DoubleWeightArray(length);
+    }
+
+    abstract int length();
+
+    abstract double get(int index);
+
+    abstract void set(int index, double value);
+
+    abstract void clear(int from, int to);
+
+    /**
+     * {@code target[j] = this[offset + j]} for every element of the target
+     */
+    abstract void copyTo(int offset, WeightArray target);
+
+    /**
+     * {@code target[j] += factor * this[offset + j]} for every element of the target
+     */
+    abstract void addTo(int offset, double factor, WeightArray target);
+
+    /**
+     * {@code this[offset + j] += factor * values[j]} for every element of the values
+     */
+    abstract void add(int offset, double factor, WeightArray values);
+
+    /**
+     * Dot product of {@code values} with the elements starting at {@code offset}
+     */
+    abstract double dot(int offset, WeightArray values);
+
+    /**
+     * Replaces every element with its logistic sigmoid
+     */
+    abstract void sigmoid();
+
+    /**
+     * {@code this[j] *= activations[j] * (1 - activations[j])} for every element, the sigmoid's derivative
+     */
+    abstract void multiplySigmoidGradient(WeightArray activations);
+
+    abstract void scale(int from, int to, double factor);
+
+    /**
+     * {@code this[i] = this[i] * scale - step * gradient[i]} for {@code from <= i < to}
+     */
+    abstract void update(int from, int to, double scale, double step, WeightArray gradient);
+
+    abstract double sumOfSquares(int from, int to);
+
+    private static final class DoubleWeightArray extends WeightArray {
+        private final double[] values;
+
+        private DoubleWeightArray(int length) {
+            this.values = new double[length];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, double value) {
+            values[index] = value;
+        }
+
+        @Override
+        void clear(int from, int to) {
+            Arrays.fill(values, from, to, 0);
+        }
+
+        @Override
+        void copyTo(int offset, WeightArray target) {
+            double[] targets = ((DoubleWeightArray) target).values;
+            System.arraycopy(values, offset, targets, 0, targets.length);
+        }
+
+        @Override
+        void addTo(int offset, double factor, WeightArray target) {
+            double[] targets = ((DoubleWeightArray) target).values;
+            for (int j = 0; j < targets.length; j++) {
+                targets[j] += factor * values[offset + j];
+            }
+        }
+
+        @Override
+        void add(int offset, double factor, WeightArray values) {
+            double[] others = ((DoubleWeightArray) values).values;
+            for (int j = 0; j < others.length; j++) {
+                this.values[offset + j] += factor * others[j];
+            }
+        }
+
+        @Override
+        double dot(int offset, WeightArray values) {
+            double[] others = ((DoubleWeightArray) values).values;
+            double sum = 0;
+            for (int j = 0; j < others.length; j++) {
+                sum += this.values[offset + j] * others[j];
+            }
+            return sum;
+        }
+
+        @Override
+        void sigmoid() {
+            for (int j = 0; j < values.length; j++) {
+                values[j] = 1.0 / (1.0 + Math.exp(-values[j]));
+            }
+        }
+
+        @Override
+        void multiplySigmoidGradient(WeightArray activations) {
+            double[] others = ((DoubleWeightArray) activations).values;
+            for (int j = 0; j < values.length; j++) {
+                values[j] *= others[j] * (1 - others[j]);
+            }
+        }
+
+        @Override
+        void scale(int from, int to, double factor) {
+            for (int i = from; i < to; i++) {
+                values[i] *= factor;
+            }
+        }
+
+        @Override
+        void update(int from, int to, double scale, double step, WeightArray gradient) {
+            double[] gradients = ((DoubleWeightArray) gradient).values;
+            for (int i = from; i < to; i++) {
+                values[i] = values[i] * scale - step * gradients[i];
+            }
+        }
+
+        @Override
+        double sumOfSquares(int from, int to) {
+            double squares = 0;
+            for (int i = from; i < to; i++) {
+                squares += values[i] * values[i];
+            }
+            return squares;
+        }
+    }
+
+    // Halves the memory traffic of every pass over the weights and gradients
+    private static final class FloatWeightArray extends WeightArray {
+        private final float[] values;
+
+        private FloatWeightArray(int length) {
+            this.values = new float[length];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, double value) {
+            values[index] = (float) value;
+        }
+
+        @Override
+        void clear(int from, int to) {
+            Arrays.fill(values, from, to, 0);
+        }
+
+        @Override
+        void copyTo(int offset, WeightArray target) {
+            float[] targets = ((FloatWeightArray) target).values;
+            System.arraycopy(values, offset, targets, 0, targets.length);
+        }
+
+        @Override
+        void addTo(int offset, double factor, WeightArray target) {
+            float[] targets = ((FloatWeightArray) target).values;
+            float f = (float) factor;
+            for (int j = 0; j < targets.length; j++) {
+                targets[j] += f * values[offset + j];
+            }
+        }
+
+        @Override
+        void add(int offset, double factor, WeightArray values) {
+            float[] others = ((FloatWeightArray) values).values;
+            float f = (float) factor;
+            for (int j = 0; j < others.length; j++) {
+                this.values[offset + j] += f * others[j];
+            }
+        }
+
+        @Override
+        double dot(int offset, WeightArray values) {
+            float[] others = ((FloatWeightArray) values).values;
+            float sum = 0;
+            for (int j = 0; j < others.length; j++) {
+                sum += this.values[offset + j] * others[j];
+            }
+            return sum;
+        }
+
+        @Override
+        void sigmoid() {
+            for (int j = 0; j < values.length; j++) {
+                values[j] = (float) (1.0 / (1.0 + Math.exp(-values[j])));
+            }
+        }
+
+        @Override
+        void multiplySigmoidGradient(WeightArray activations) {
+            float[] others = ((FloatWeightArray) activations).values;
+            for (int j = 0; j < values.length; j++) {
+                values[j] *= others[j] * (1 - others[j]);
+            }
+        }
+
+        @Override
+        void scale(int from, int to, double factor) {
+            float f = (float) factor;
+            for (int i = from; i < to; i++) {
+                values[i] *= f;
+            }
+        }
+
+        @Override
+        void update(int from, int to, double scale, double step, WeightArray gradient) {
+            float[] gradients = ((FloatWeightArray) gradient).values;
+            float s = (float) scale;
+            float st = (float) step;
+            for (int i = from; i < to; i++) {
+                values[i] = values[i] * s - st * gradients[i];
+            }
+        }
+
+        @Override
+        double sumOfSquares(int from, int to) {
+            double squares = 0;
+            for (int i = from; i < to; i++) {
+                squares += (double) values[i] * values[i];
+            }
+            return squares;
+        }
+    }
+}
@@ -1,11 +1,37 @@
 package com.github.chen.wentao.languageclassifier.cli;
 
+import com.github.chen.wentao.languageclassifier.BatchOrder;
+import com.github.chen.wentao.languageclassifier.CascadeClassifier;
+import com.github.chen.wentao.languageclassifier.CheckpointPolicy;
+import com.github.chen.wentao.languageclassifier.CrossValidation;
+import com.github.chen.wentao.languageclassifier.DataSetStatistics;
+import com.github.chen.wentao.languageclassifier.DocumentScorer;
+import com.github.chen.wentao.languageclassifier.EarlyStopping;
+import com.github.chen.wentao.languageclassifier.FeatureExtractor;
+import com.github.chen.wentao.languageclassifier.HashedNGramFeatureExtractor;
+import com.github.chen.wentao.languageclassifier.HyperparameterSweep;
+import com.github.chen.wentao.languageclassifier.InferenceBenchmark;
 import com.github.chen.wentao.languageclassifier.LanguageClassifier;
+import com.github.chen.wentao.languageclassifier.LanguageSegment;
 import com.github.chen.wentao.languageclassifier.LanguageWordsDataSet;
 import com.github.chen.wentao.languageclassifier.LetterEncoder;
 import com.github.chen.wentao.languageclassifier.LetterEncodingFileConverter;
+import com.github.chen.wentao.languageclassifier.ModelGroup;
+import com.github.chen.wentao.languageclassifier.ModelWarmup;
+import com.github.chen.wentao.languageclassifier.MutableLanguageWordsDataSet;
+import com.github.chen.wentao.languageclassifier.OnlineTrainer;
+import com.github.chen.wentao.languageclassifier.ParagraphResult;
+import com.github.chen.wentao.languageclassifier.QuantizedLanguageClassifier;
+import com.github.chen.wentao.languageclassifier.TrainingBenchmark;
+import com.github.chen.wentao.languageclassifier.TrainingOptions;
+import com.github.chen.wentao.languageclassifier.TrainingPrecision;
+import com.github.chen.wentao.languageclassifier.TrainingResult;
 import com.github.chen.wentao.languageclassifier.languages.BasicLanguage;
+import com.github.chen.wentao.languageclassifier.languages.Corpus;
 import com.github.chen.wentao.languageclassifier.languages.Language;
+import com.github.chen.wentao.languageclassifier.languages.LanguageGroup;
+import com.github.chen.wentao.languageclassifier.languages.MappedLanguage;
+import com.github.chen.wentao.languageclassifier.server.ClassificationServer;
 import com.github.chen.wentao.mllib.data.LearningCurve;
 import com.github.chen.wentao.mllib.training.BatchFullDataSetStream;
 import com.github.chen.wentao.mllib.training.StreamCostFunction;
@@ -20,22 +46,33 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
@@ -46,27 +83,30 @@ public class Cli {
     private final CliCommand[] COMMANDS = new CliCommand[]{
             new CliCommand("new",
                     "Create a new classifier",
-                    "new [<classifier>] {-m <length> | -c <minFraction>} [-d <dataSet>] -l <languages>...",
+                    "new [<classifier>] {-m <length> | -c <minFraction>} [-d <dataSet> | -o] [-g <features> [<minN> <maxN>] [-u <hiddenUnits>]] -l <languages>...",
                     this::newRecognizer, new Options()
                     .addOptionGroup(requiredOptionGroup(
                             option("m", "length", "max word length", 1),
                             option("c", "cover", "the minimum fraction of all words included used to determine max word length", 1)
                     )).addOption(requiredOption("l", "language", "The languages to classify", Option.UNLIMITED_VALUES))
                     .addOption(option("d", "dataset", "Default data set for classifier", 1))
+                    .addOption(option("o", "offheap", "Keep the words of the new data set off the heap", 0))
+                    .addOption(option("g", "ngrams", "Use hashed character n-grams (default: 1 to 3) as input instead of letter positions, args: <features> [<minN> <maxN>]", Option.UNLIMITED_VALUES))
+                    .addOption(option("u", "hidden", "Number of hidden units for n-gram input (default: number of letters + 1)", 1))
             ),
             new CliCommand("show",
-                    "Display information for current classifiers, languages, or data sets",
+                    "Display information for current classifiers, languages, or data sets and their statistics",
                     "show {-c | -l | -d}",
                     this::show, new Options()
                     .addOptionGroup(requiredOptionGroup(
                             option("c", "classifiers", "Show classifiers", 0),
                             option("l", "languages", "Show languages", 0),
-                            option("d", "datasets", "Show data sets", 0)
+                            option("d", "datasets", "Show data sets with word length, letter and overlap statistics", 0)
                     ))
             ),
             new CliCommand("train",
                     "Train a classifier",
-                    "train [<classifier>] -a <alpha> -i <iterations> [-l <lambda>] [-b <batchSize>] [-v <numPrintStatements>] [-c] [-x] [-d <dataSet>]",
+                    "train [<classifier>] -a <alpha> -i <iterations> [-l <lambda>] [-b <batchSize>] [-v <numPrintStatements>] [-c] [-x] [-d <dataSet>] [-s] [-p <precision>] [-e <cvDataSet> <evaluateEvery> <patience>] [-k <directory> <everyBatches> <everySeconds> [-r]] [-o <order>]",
                     this::train, new Options()
                     .addOption(requiredOption("a", "alpha", "alpha, learning rate (> 0)", 1))
                     .addOption(option("l", "lambda", "lambda, regularization parameter (>= 0)", 1))
@@ -76,16 +116,37 @@ public class Cli {
                     .addOption(option("c", "cost", "Display running cost", 0))
                     .addOption(option("x", "accuracy", "Display running accuracy", 0))
                     .addOption(option("d", "dataset", "Training data set", 1))
+                    .addOption(option("s", "sparse", "Only compute first layer gradients for the letter columns present in each batch", 0))
+                    .addOption(option("p", "precision", "Training precision: double or float (float uses the sparse trainer)", 1))
+                    .addOption(option("e", "early", "Stop when the cost on a data set has not improved for <patience> evaluations, args: <cvDataSet> <evaluateEvery> <patience>", 3))
+                    .addOption(option("k", "checkpoint", "Write checkpoints in the background (0 disables an interval), args: <directory> <everyBatches> <everySeconds>", 3))
+                    .addOption(option("r", "resume", "Resume from the checkpoint in the checkpoint directory", 0))
+                    .addOption(option("o", "order", "Batch order: fixed, shuffled (every epoch) or stratified (equal share of each language per batch)", 1))
+            ),
+            new CliCommand("tune",
+                    "Fine-tune a trained classifier on new words, replaying a sample of earlier words",
+                    "tune [<classifier>] -w <language> <words>... [-a <alpha>] [-l <lambda>] [-e <passes>] [-r <reservoirSize>] [-k <replayPerWord>]",
+                    this::tune, new Options()
+                    .addOption(requiredOption("w", "words", "Labelled words, args: <language> <words>...", Option.UNLIMITED_VALUES))
+                    .addOption(option("a", "alpha", "alpha, learning rate (> 0, default: 0.1), kept by later tunes of the classifier", 1))
+                    .addOption(option("l", "lambda", "lambda, regularization parameter (>= 0), kept by later tunes of the classifier", 1))
+                    .addOption(option("e", "passes", "Number of updates with the new words (> 0)", 1))
+                    .addOption(option("r", "reservoir", "Number of earlier words kept for replay (default: 10000), only used by the first tune of a classifier", 1))
+                    .addOption(option("k", "replay", "Replayed words per new word (default: 4), only used by the first tune of a classifier", 1))
             ),
             new CliCommand("test",
                     "Test a classifier with an input",
-                    "test [<classifier>] [-v] {-w <input> | -p <paragraph>}",
+                    "test [<classifier>] [-v] {-w <input> | -p <paragraph> [-e <confidence>] [-n <minWords>] [-s <window>] | -f <file>}",
                     this::test, new Options()
                     .addOptionGroup(requiredOptionGroup(
                             option("w", "word", "Test an input word", 1),
-                            option("p", "paragraph", "Test a paragraph of words", Option.UNLIMITED_VALUES)
+                            option("p", "paragraph", "Test a paragraph of words", Option.UNLIMITED_VALUES),
+                            option("f", "file", "Test a text file, streamed without loading it into memory", 1)
                     ))
                     .addOption(option("v", "verbose", "Display additional information", 0))
+                    .addOption(option("e", "early", "Stop scoring a paragraph once the best language reaches this confidence (0.5 - 1)", 1))
+                    .addOption(option("n", "min", "Minimum words scored before stopping early (>= 1)", 1))
+                    .addOption(option("s", "segment", "Split a paragraph into language segments using a sliding window of words", 1))
             ),
             new CliCommand("analyze",
                     "Display analysis information for a classifier",
@@ -104,18 +165,20 @@ public class Cli {
             ),
             new CliCommand("load",
                     "Loads a classifier as a directory",
-                    "load -f <file>"
+                    "load -f <file> [-w]"
                     , this::load, new Options()
                     .addOption(requiredOption("f", "file", "Output directory to load", 1))
+                    .addOption(option("w", "warmup", "Run inference on synthetic words until its speed is steady", 0))
             ),
             new CliCommand("add",
                     "Add a new language or data set",
-                    "add {-l <iso639-1> <name> <file> | -d <name> <languages>...}",
+                    "add {-l <iso639-1> <name> <file> [-m] | -d <name> <languages>...}",
                     this::add, new Options()
                     .addOptionGroup(requiredOptionGroup(
                             option("l", "language", "Add new language, args: <iso639-1> <name> <file>", 3),
                             option("d", "dataset", "Add new data set, args: <name> <languages>...", Option.UNLIMITED_VALUES)
                     ))
+                    .addOption(option("m", "mapped", "The language file is a binary corpus to memory map instead of a resource", 0))
             ),
             new CliCommand("copy",
                     "Copies a classifier, language, or data set",
@@ -173,11 +236,139 @@ public class Cli {
             ),
             new CliCommand("file",
                     "Perform operations on data files",
-                    "file -f <file> [-o <output>] [-c]",
+                    "file -f <file> [-o <output>] [-c [-m <mappingFile> [-t <threads>] [-u <statisticsFile>]]]",
                     this::file, new Options()
                     .addOption(option("f", "file", "The input file to use", 1))
                     .addOption(option("o", "output", "The output file", 1))
                     .addOption(option("c", "convert", "Convert the encoding of the file", 0))
+                    .addOption(option("m", "mapping", "Convert without prompting using a table of '<character> <encoding>' lines; a-z map to themselves unless listed", 1))
+                    .addOption(option("t", "threads", "Number of conversion threads (default: available processors)", 1))
+                    .addOption(option("u", "unmapped", "Output file for the characters missing from the mapping table", 1))
+            ),
+            new CliCommand("corpus",
+                    "Compile language word lists into binary corpora that load without parsing",
+                    "corpus {-o <directory> [-l <languages>...] | -f <textFile> <corpusFile>}",
+                    this::corpus, new Options()
+                    .addOptionGroup(requiredOptionGroup(
+                            option("o", "output", "Resource root to write to, e.g. src/main/resources", 1),
+                            option("f", "file", "Compile a word list file, args: <textFile> <corpusFile>", 2)
+                    ))
+                    .addOption(option("l", "language", "Languages to compile (default: all)", Option.UNLIMITED_VALUES))
+            ),
+            new CliCommand("bench",
+                    "Runs benchmarks on a classifier",
+                    "bench [<classifier>] {-p -a <alpha> -i <iterations> [-l <lambda>] [-b <batchSize>] [-d <trainDataSet>] [-c <cvDataSet>] [-n <checkpoints>] | -s [-f <directory>] [-k <predictions>] [-w]}",
+                    this::bench, new Options()
+                    .addOptionGroup(requiredOptionGroup(
+                            option("p", "precision", "Compare convergence of double and float training from the same initial weights", 0),
+                            option("s", "startup", "Measure the time from loading a classifier to its first predictions", 0)
+                    ))
+                    .addOption(option("f", "file", "Saved classifier directory to load for the startup benchmark (default: the classifier slot)", 1))
+                    .addOption(option("k", "predictions", "Number of predictions for the startup benchmark (default: 1000000)", 1))
+                    .addOption(option("w", "warmup", "Warm up the classifier before the startup benchmark predictions", 0))
+                    .addOption(option("a", "alpha", "alpha, learning rate (> 0)", 1))
+                    .addOption(option("l", "lambda", "lambda, regularization parameter (>= 0)", 1))
+                    .addOption(option("i", "iterations", "number of iterations (> 0)", 1))
+                    .addOption(option("b", "batch", "batch size (> 0)", 1))
+                    .addOption(option("d", "train", "Training data set", 1))
+                    .addOption(option("c", "cv", "Cross validation data set", 1))
+                    .addOption(option("n", "checkpoints", "Number of times the cost is measured (> 0)", 1))
+            ),
+            new CliCommand("sweep",
+                    "Train candidate classifiers concurrently over a grid or random ranges of hyperparameters and rank them on a data set",
+                    "sweep [<classifier>] -a <alpha>... -i <iterations> -e <cvDataSet> [-l <lambda>...] [-b <batchSize>...] [-m <length>... | -c <minFraction>...] [-d <trainDataSet>] [-n <samples>] [-t <threads>] [-p <precision>] [-k <top>] [-o <classifier>]",
+                    this::sweep, new Options()
+                    .addOption(requiredOption("a", "alpha", "learning rates, a value or a <min>:<max> range", Option.UNLIMITED_VALUES))
+                    .addOption(requiredOption("i", "iterations", "number of iterations for every candidate (> 0)", 1))
+                    .addOption(requiredOption("e", "cv", "Data set the candidates are ranked on", 1))
+                    .addOption(option("l", "lambda", "regularization parameters, a value or a <min>:<max> range", Option.UNLIMITED_VALUES))
+                    .addOption(option("b", "batch", "batch sizes, a value or a <min>:<max> range", Option.UNLIMITED_VALUES))
+                    .addOptionGroup(optionGroup(
+                            option("m", "length", "max word lengths, a value or a <min>:<max> range", Option.UNLIMITED_VALUES),
+                            option("c", "cover", "minimum fractions of training words covered, used to determine max word lengths", Option.UNLIMITED_VALUES)
+                    ))
+                    .addOption(option("d", "train", "Training data set", 1))
+                    .addOption(option("n", "samples", "Sample this many random candidates instead of the full grid; required for ranges", 1))
+                    .addOption(option("t", "threads", "Number of candidates trained at once (default: available processors)", 1))
+                    .addOption(option("p", "precision", "Training precision: double or float", 1))
+                    .addOption(option("k", "top", "Only display the best <top> candidates", 1))
+                    .addOption(option("o", "output", "Store the best classifier in this slot", 1))
+            ),
+            new CliCommand("kfold",
+                    "Estimate accuracy and cost with k-fold cross validation, training the folds concurrently",
+                    "kfold [<classifier>] -k <folds> -a <alpha> -i <iterations> [-l <lambda>] [-b <batchSize>] [-d <dataSet>] [-t <threads>] [-p <precision>] [-s <seed>] [-v]",
+                    this::kFold, new Options()
+                    .addOption(requiredOption("k", "folds", "number of folds (>= 2)", 1))
+                    .addOption(requiredOption("a", "alpha", "alpha, learning rate (> 0)", 1))
+                    .addOption(requiredOption("i", "iterations", "number of iterations (> 0)", 1))
+                    .addOption(option("l", "lambda", "lambda, regularization parameter (>= 0)", 1))
+                    .addOption(option("b", "batch", "batch size (> 0)", 1))
+                    .addOption(option("d", "dataset", "Data set to split into folds", 1))
+                    .addOption(option("t", "threads", "Number of folds trained at once (default: available processors)", 1))
+                    .addOption(option("p", "precision", "Training precision: double or float (float uses the sparse trainer)", 1))
+                    .addOption(option("s", "seed", "Random seed for the folds and initial weights", 1))
+                    .addOption(option("v", "verbose", "Display the result of every fold", 0))
+            ),
+            new CliCommand("quantize",
+                    "Exports a classifier with float32 or int8 weights and reports the accuracy change",
+                    "quantize [<classifier>] [-i] [-f <file>] [-d <dataSet>] [-n <words>]",
+                    this::quantize, new Options()
+                    .addOption(option("i", "int8", "Quantize first layer weights to 8 bit integers instead of float32", 0))
+                    .addOption(option("f", "file", "Output file for the quantized classifier", 1))
+                    .addOption(option("d", "dataset", "Data set used to compare accuracy", 1))
+                    .addOption(option("n", "words", "Number of words used to compare accuracy", 1))
+            ),
+            new CliCommand("serve",
+                    "Starts or stops a local HTTP classification server",
+                    "serve [<classifier>] {[-f <directory>] [-p <port>] [-b <maxBatchSize>] [-t <maxDelayMicros>] [-w <threads>] | -s | -x | -r <directory> -d <dataSet> [-n <sampleSize>] [-m <minAccuracy>]}",
+                    this::serve, new Options()
+                    .addOption(option("f", "file", "Saved classifier directory to serve instead of a classifier slot", 1))
+                    .addOption(option("p", "port", "Port to listen on (0 for any free port)", 1))
+                    .addOption(option("b", "batch", "Maximum micro-batch size (> 0)", 1))
+                    .addOption(option("t", "delay", "Maximum time a request waits to be batched in microseconds (>= 0)", 1))
+                    .addOption(option("w", "threads", "Number of HTTP handler threads (> 0)", 1))
+                    .addOptionGroup(optionGroup(
+                            option("s", "stats", "Display server latency statistics", 0),
+                            option("x", "stop", "Stop the running server", 0),
+                            option("r", "reload", "Load, warm up and validate a saved classifier in the background, then swap it into the running server", 1)
+                    ))
+                    .addOption(option("d", "dataset", "Data set used to validate a reloaded classifier, required with -r; use words it was not trained on", 1))
+                    .addOption(option("n", "sample", "Number of words used to validate a reloaded classifier (default: 1000)", 1))
+                    .addOption(option("m", "min", "Minimum accuracy (0 to 1) a reloaded classifier must reach to be swapped in", 1))
+            ),
+            new CliCommand("group",
+                    "Classify with several classifiers at once, encoding each word once per distinct encoding",
+                    "group [<classifiers>...] [-f <directories>...] [-m <combination>] [-v] {-w <words>... | -b <words> [-d <dataSet>]}",
+                    this::group, new Options()
+                    .addOption(option("f", "file", "Saved classifier directories to add to the group", Option.UNLIMITED_VALUES))
+                    .addOption(option("m", "combination", "How member outputs are combined: onevsrest (default) or voting", 1))
+                    .addOption(option("v", "verbose", "Display additional information", 0))
+                    .addOptionGroup(requiredOptionGroup(
+                            option("w", "word", "Words to classify", Option.UNLIMITED_VALUES),
+                            option("b", "bench", "Compare the time to score words with the group and with each classifier separately", 1)
+                    ))
+                    .addOption(option("d", "dataset", "Data set the benchmark words are taken from (default: the first classifier's)", 1))
+            ),
+            new CliCommand("cascade",
+                    "Create, train and test a classifier that picks a language group before the language",
+                    "cascade [<name>] [-g <groups>... | -s <languages>... | -f <directory>] [-c <coverage>] [-a <alpha> -i <iterations> [-l <lambda>] [-b <batchSize>]] [-o <directory>] [-w <words>... [-k <groups>] [-v]] [-e <words> [-d <dataSet>]]",
+                    this::cascade, new Options()
+                    .addOptionGroup(optionGroup(
+                            option("g", "groups", "Create from groups of comma separated languages, e.g. en,fr,es tr zh", Option.UNLIMITED_VALUES),
+                            option("s", "script", "Create from languages grouped by script", Option.UNLIMITED_VALUES),
+                            option("f", "file", "Load a saved cascade directory", 1)
+                    ))
+                    .addOption(option("c", "cover", "The minimum fraction of words within each classifier's max word length (default: 0.99)", 1))
+                    .addOption(option("a", "alpha", "alpha, learning rate (> 0)", 1))
+                    .addOption(option("i", "iterations", "number of iterations (> 0)", 1))
+                    .addOption(option("l", "lambda", "lambda, regularization parameter (>= 0)", 1))
+                    .addOption(option("b", "batch", "batch size (> 0)", 1))
+                    .addOption(option("o", "output", "Directory to save the cascade to", 1))
+                    .addOption(option("w", "word", "Words to classify", Option.UNLIMITED_VALUES))
+                    .addOption(option("k", "top", "Number of groups evaluated for the scores of a word (default: 1)", 1))
+                    .addOption(option("v", "verbose", "Display additional information", 0))
+                    .addOption(option("e", "evaluate", "Measure accuracy on this many words", 1))
+                    .addOption(option("d", "dataset", "Data set used to measure accuracy (default: all languages of the cascade)", 1))
             ),
             new CliCommand("help",
                     "Displays help information",
@@ -196,6 +387,12 @@ public class Cli {
     private final Map<String, Supplier<Language>> languagesLoader;
     private final Map<String, Language> languages = new HashMap<>();
     private final Map<String, LanguageWordsDataSet> dataSets = new HashMap<>();
+    // Data sets that words were added to, reused while the named data set is still their latest snapshot
+    private final Map<String, MutableLanguageWordsDataSet> mutableDataSets = new HashMap<>();
+    // Online trainers keep their replay reservoir between tune commands
+    private final Map<LanguageClassifier, OnlineTrainer> onlineTrainers = new IdentityHashMap<>();
+    private final Map<String, CascadeClassifier> cascades = new HashMap<>();
+    private ClassificationServer server;
 
     private Cli(String prompt, Random random, int languageRecognizersCount) {
         this.prompt = prompt;
@@ -226,7 +423,7 @@ public class Cli {
         LanguageWordsDataSet dataSet = dataSets.get(cmd.getOptionValue("d"));
         boolean createNewDataSet = dataSet == null;
         if (createNewDataSet) {
-            dataSet = new LanguageWordsDataSet(random, languages);
+            dataSet = cmd.hasOption("o") ? LanguageWordsDataSet.offHeap(random, languages) : new LanguageWordsDataSet(random, languages);
         }
 
         int dest = getDestSlot(cmd, 0, false);
@@ -236,9 +433,19 @@ public class Cli {
             maxWordLength = Math.max(maxWordLength, dataSet.findMaxWordLengthForDataSetCoverage(dataSetCoverage));
         }
 
-        int inputLettersCount = Language.countDistinctLetters(languages);
-        LetterEncoder letterEncoder = LetterEncoder.fromLanguages(languages);
-        this.languageClassifiers[dest] = new LanguageClassifier(inputLettersCount, maxWordLength, letterEncoder, random, dataSet, languages);
+        char[] letters = dataSet.statistics().getLetters();
+        int inputLettersCount = letters.length;
+        LetterEncoder letterEncoder = LetterEncoder.fromLetters(letters);
+        String[] nGramValues = cmd.getOptionValues("g");
+        if (nGramValues != null) {
+            int minN = nGramValues.length >= 3 ? Integer.parseInt(nGramValues[1]) : 1;
+            int maxN = nGramValues.length >= 3 ? Integer.parseInt(nGramValues[2]) : 3;
+            FeatureExtractor featureExtractor = new HashedNGramFeatureExtractor(Integer.parseInt(nGramValues[0]), minN, maxN, maxWordLength);
+            int hiddenUnits = Integer.parseInt(cmd.getOptionValue("u", String.valueOf(inputLettersCount + 1)));
+            this.languageClassifiers[dest] = new LanguageClassifier(featureExtractor, hiddenUnits, inputLettersCount, letterEncoder, random, dataSet, languages);
+        } else {
+            this.languageClassifiers[dest] = new LanguageClassifier(inputLettersCount, maxWordLength, letterEncoder, random, dataSet, languages);
+        }
         if (createNewDataSet) {
             addDataSet(languages, dataSet);
         }
@@ -307,6 +514,35 @@ public class Cli {
         for (Map.Entry<String, LanguageWordsDataSet> entry : dataSets.entrySet()) {
             LanguageWordsDataSet dataSet = entry.getValue();
             out.printf("%s) Words: %d, Languages: %s%n", entry.getKey(), dataSet.numWords(), Arrays.toString(dataSet.getLanguages()));
+            showDataSetStatistics(dataSet.statistics());
+        }
+    }
+
+    private void showDataSetStatistics(DataSetStatistics statistics) {
+        if (statistics.getNumWords() == 0) {
+            return;
+        }
+        StringJoiner coverage = new StringJoiner(", ");
+        for (double fraction : new double[]{0.5, 0.9, 0.95, 0.99}) {
+            coverage.add(String.format("%.0f%% <= %d", fraction * 100, statistics.getMaxWordLengthForCoverage(fraction)));
+        }
+        out.printf("   Word lengths: %s, max %d%n", coverage, statistics.getMaxWordLength());
+        Language[] languages = statistics.getLanguages();
+        for (int i = 0; i < languages.length; i++) {
+            StringJoiner overlaps = new StringJoiner(", ");
+            for (int j = 0; j < languages.length; j++) {
+                if (j != i && statistics.getOverlap(i, j) > 0) {
+                    overlaps.add(String.format("%s %d", languages[j].getIso6391(), statistics.getOverlap(i, j)));
+                }
+            }
+            long letterTotal = statistics.getLetterTotal(i);
+            List<Map.Entry<Character, Long>> frequencies = statistics.getLetterFrequencies(i);
+            StringJoiner letters = new StringJoiner(" ");
+            for (Map.Entry<Character, Long> frequency : frequencies.subList(0, Math.min(5, frequencies.size()))) {
+                letters.add(String.format("%c %.1f%%", frequency.getKey(), 100.0 * frequency.getValue() / letterTotal));
+            }
+            out.printf("   %s: %d words, shared with [%s], top letters [%s]%s%n", languages[i].getIso6391(), statistics.getWordCount(i), overlaps, letters,
+                    statistics.getUnknownLetterCount(i) > 0 ? String.format(", %d unknown letters", statistics.getUnknownLetterCount(i)) : "");
         }
     }
 
@@ -314,8 +550,8 @@ public class Cli {
         for (int i = start; i < end; i++) {
             LanguageClassifier languageClassifier = languageClassifiers[i];
             if (languageClassifier != null) {
-                out.printf("%2d) Max Word Length: %d, Languages: %s%n",
-                        i, languageClassifier.getMaxWordLength(), Arrays.toString(languageClassifier.getLanguages()));
+                out.printf("%2d) Max Word Length: %d, Languages: %s, Input: %s%n",
+                        i, languageClassifier.getMaxWordLength(), Arrays.toString(languageClassifier.getLanguages()), languageClassifier.getFeatureExtractor());
             } else {
                 out.printf("%2d) Empty%n", i);
             }
@@ -339,22 +575,98 @@ public class Cli {
         int dest = getDestSlot(cmd, 0, true);
         LanguageClassifier languageClassifier = languageClassifiers[dest];
         int numWords = languageClassifier.getAllWordsDataSet().numWords();
+        boolean sparse = cmd.hasOption("s");
+        TrainingPrecision precision = TrainingPrecision.valueOf(cmd.getOptionValue("p", "double").toUpperCase());
+        if (precision == TrainingPrecision.FLOAT && !sparse) {
+            out.println("Float precision training uses the sparse trainer (-s)");
+        }
         AtomicLong startTrainingTime = new AtomicLong(System.nanoTime());
-        languageClassifier.train(alpha, lambda, iterations, batchSize, displayInfo != null ? Math.max(displayInfo, 0) : 0, batchIndex -> {
-                long startTime = System.nanoTime();
-                if (displayRunningCost) {
-                    out.printf("Current cost: %.10f%n", languageClassifier.cost(lambda));
-                }
-                if (displayRunningAccuracy) {
-                    out.printf("Current accuracy: %.10f%n", languageClassifier.accuracy(numWords));
-                }
-                startTrainingTime.set(startTrainingTime.get() - startTime + System.nanoTime());
-                out.printf("Training... %.2f%%%n", batchIndex * 100.0 / iterations);
-        }, getDataSet(trainingDataSet, languageClassifier::getAllWordsDataSet));
+        IntConsumer preBatchEvent = batchIndex -> {
+            long startTime = System.nanoTime();
+            if (displayRunningCost) {
+                out.printf("Current cost: %.10f%n", languageClassifier.cost(lambda));
+            }
+            if (displayRunningAccuracy) {
+                out.printf("Current accuracy: %.10f%n", languageClassifier.accuracy(numWords));
+            }
+            startTrainingTime.set(startTrainingTime.get() - startTime + System.nanoTime());
+            out.printf("Training... %.2f%%%n", batchIndex * 100.0 / iterations);
+        };
+        int preBatchEventCount = displayInfo != null ? Math.max(displayInfo, 0) : 0;
+        LanguageWordsDataSet dataSet = getDataSet(trainingDataSet, languageClassifier::getAllWordsDataSet);
+        if (dataSet == null) {
+            return;
+        }
+        TrainingOptions options = new TrainingOptions(alpha, iterations)
+                .lambda(lambda)
+                .batchSize(batchSize)
+                .sparse(sparse)
+                .precision(precision)
+                .batchOrder(BatchOrder.valueOf(cmd.getOptionValue("o", "fixed").toUpperCase()))
+                .random(random)
+                .preBatchEvent(preBatchEventCount, preBatchEvent);
+        String[] earlyStoppingValues = cmd.getOptionValues("e");
+        if (earlyStoppingValues != null) {
+            LanguageWordsDataSet cvDataSet = getDataSet(earlyStoppingValues[0], () -> null);
+            if (cvDataSet == null) {
+                return;
+            }
+            options.earlyStopping(new EarlyStopping(cvDataSet, Integer.parseInt(earlyStoppingValues[1]), Integer.parseInt(earlyStoppingValues[2])));
+        }
+        String[] checkpointValues = cmd.getOptionValues("k");
+        if (checkpointValues != null) {
+            options.checkpoint(new CheckpointPolicy(Paths.get(checkpointValues[0]), Integer.parseInt(checkpointValues[1]), Long.parseLong(checkpointValues[2]), TimeUnit.SECONDS))
+                    .resume(cmd.hasOption("r"));
+        } else if (cmd.hasOption("r")) {
+            throw new IllegalArgumentException("resume requires a checkpoint directory (-k)");
+        }
+        // An online trainer still holds the weights from before this training
+        onlineTrainers.remove(languageClassifier);
+        TrainingResult result = languageClassifier.train(options, dataSet);
         if (displayInfo != null) {
-            out.println("Training... 100.00%");
+            out.printf("Training... %.2f%%%n", result.getIterations() * 100.0 / iterations);
             out.printf("Training time: %.3fs%n", (System.nanoTime() - startTrainingTime.get()) / 1000000000.0);
         }
+        if (earlyStoppingValues != null) {
+            out.printf("%s after %d iterations, kept weights from iteration %d (cv cost %.10f)%n",
+                    result.isStoppedEarly() ? "Stopped early" : "Finished", result.getIterations(), result.getBestIteration(), result.getBestCost());
+        }
+    }
+
+    private void tune(CommandLine cmd) {
+        String[] wordsValues = cmd.getOptionValues("w");
+        int passes = Integer.parseInt(cmd.getOptionValue("e", "1"));
+        if (passes <= 0) throw new IllegalArgumentException(String.format("number of passes (%d) must be greater than 0", passes));
+        if (wordsValues.length < 2) {
+            err.println("Expected a language followed by at least one word");
+            return;
+        }
+
+        int dest = getDestSlot(cmd, 0, true);
+        LanguageClassifier languageClassifier = languageClassifiers[dest];
+        OnlineTrainer onlineTrainer = onlineTrainers.get(languageClassifier);
+        if (onlineTrainer == null) {
+            double alpha = Double.parseDouble(cmd.getOptionValue("a", "0.1"));
+            double lambda = Double.parseDouble(cmd.getOptionValue("l", "0"));
+            int reservoirSize = Integer.parseInt(cmd.getOptionValue("r", "10000"));
+            int replayPerWord = Integer.parseInt(cmd.getOptionValue("k", "4"));
+            onlineTrainer = languageClassifier.newOnlineTrainer(alpha, lambda, reservoirSize, replayPerWord, random);
+            onlineTrainers.put(languageClassifier, onlineTrainer);
+        } else {
+            // Keep the reservoir, only the rates change
+            if (cmd.hasOption("a")) {
+                onlineTrainer.setAlpha(Double.parseDouble(cmd.getOptionValue("a")));
+            }
+            if (cmd.hasOption("l")) {
+                onlineTrainer.setLambda(Double.parseDouble(cmd.getOptionValue("l")));
+            }
+        }
+        Language language = getLanguageOrLoad(wordsValues[0]);
+        String[] words = Arrays.copyOfRange(wordsValues, 1, wordsValues.length);
+        onlineTrainer.update(language, passes, words);
+        onlineTrainer.apply();
+        out.printf("Tuned on %d word%s (%d updates, %d words in replay reservoir)%n", words.length, words.length == 1 ? "" : "s",
+                onlineTrainer.getUpdates(), onlineTrainer.getReservoirSize());
     }
 
     private LanguageWordsDataSet getDataSet(String dataSetName, Supplier<LanguageWordsDataSet> defaultDataSet) {
@@ -374,10 +686,45 @@ public class Cli {
         LanguageClassifier languageClassifier = languageClassifiers[dest];
 
         String word = cmd.getOptionValue("w");
-        if (word == null) {
+        if (cmd.hasOption("f")) {
+            DocumentScorer documentScorer = languageClassifier.newDocumentScorer();
+            try (Reader reader = Files.newBufferedReader(Paths.get(cmd.getOptionValue("f")), StandardCharsets.UTF_8)) {
+                documentScorer.consume(reader).finish();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            out.printf("Prediction: %s%n", documentScorer.getPrediction());
+            out.printf("Words scored: %d%n", documentScorer.getWordCount());
+            if (verbose) {
+                Map<Language, Double> results = documentScorer.getScores();
+                for (Language language : documentScorer.getRanking()) {
+                    out.printf("%s) %.10f%n", language.getName(), results.get(language));
+                }
+            }
+        } else if (word == null) {
             String[] paragraph = Arrays.stream(cmd.getOptionValues("p")).map(s -> s.split("_")).flatMap(Arrays::stream).toArray(String[]::new);
 
-            Map<Language, Double> results = languageClassifier.processParagraph(paragraph);
+            if (cmd.hasOption("s")) {
+                int windowSize = Integer.parseInt(cmd.getOptionValue("s"));
+                for (LanguageSegment segment : languageClassifier.segment(paragraph, windowSize)) {
+                    out.printf("%s: %s%n", segment.getLanguage(), String.join(" ", Arrays.copyOfRange(paragraph, segment.getStartWord(), segment.getEndWord())));
+                    if (verbose) {
+                        out.printf("\t%s%n", segment);
+                    }
+                }
+                return;
+            }
+            Map<Language, Double> results;
+            if (cmd.hasOption("e")) {
+                double confidence = Double.parseDouble(cmd.getOptionValue("e"));
+                int minWords = Integer.parseInt(cmd.getOptionValue("n", "1"));
+                ParagraphResult paragraphResult = languageClassifier.processParagraph(paragraph, confidence, minWords);
+                results = paragraphResult.getScores();
+                out.printf("Words scored: %d/%d%s%n", paragraphResult.getWordsConsumed(), paragraphResult.getTotalWords(),
+                        paragraphResult.isStoppedEarly() ? String.format(" (stopped early, margin %.4f)", paragraphResult.getMargin()) : "");
+            } else {
+                results = languageClassifier.processParagraph(paragraph);
+            }
             results.entrySet().stream()
                     .max(Comparator.comparingDouble(Map.Entry::getValue))
                     .ifPresent(maxScoreLanguage ->
@@ -443,6 +790,9 @@ public class Cli {
             LanguageClassifier languageClassifier = LanguageClassifier.loadFromFileBinary(file);
             languageClassifiers[dest] = languageClassifier;
             addDataSet(languageClassifier.getLanguages(), languageClassifier.getAllWordsDataSet());
+            if (cmd.hasOption("w")) {
+                out.println("Warm-up: " + ModelWarmup.warmUp(languageClassifier, random));
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -462,7 +812,7 @@ public class Cli {
             } else if (name.isEmpty()) {
                 err.printf("Language name cannot be empty%n");
             }
-            languages.put(iso6391, new BasicLanguage(iso6391, name, file));
+            languages.put(iso6391, cmd.hasOption("m") ? new MappedLanguage(iso6391, name, file) : new BasicLanguage(iso6391, name, file));
             out.println("Added language " + name);
         } else if (addDataSetValues != null) {
             String name = addDataSetValues[0];
@@ -609,7 +959,12 @@ public class Cli {
         if (addDataValues != null) {
             Language language = getLanguageOrLoad(addDataValues[0]);
             String[] words = Arrays.copyOfRange(addDataValues, 1, addDataValues.length);
-            dataSets.put(src, sourceDataSet.addAll(language, words));
+            MutableLanguageWordsDataSet mutableDataSet = mutableDataSets.get(src);
+            if (mutableDataSet == null || mutableDataSet.snapshot() != sourceDataSet) {
+                mutableDataSet = MutableLanguageWordsDataSet.from(sourceDataSet);
+                mutableDataSets.put(src, mutableDataSet);
+            }
+            dataSets.put(src, mutableDataSet.addAll(language, words).snapshot());
             out.println("Added " + words.length + " word" + (words.length == 1 ? "" : "s"));
         }
     }
@@ -639,9 +994,7 @@ public class Cli {
 
         int dest = getDestSlot(cmd, 0, true);
         LanguageClassifier languageClassifier = languageClassifiers[dest];
-        int inputLettersCount = languageClassifier.getInputLettersCount();
-        int maxWordLength = languageClassifier.getMaxWordLength();
-        LetterEncoder letterEncoder = languageClassifier.getLetterEncoder();
+        FeatureExtractor featureExtractor = languageClassifier.getFeatureExtractor();
 
         LanguageWordsDataSet defaultDataSet;
         int numWords;
@@ -655,14 +1008,14 @@ public class Cli {
         LanguageWordsDataSet trainingDataSet = getDataSet(trainingDataSetName, () -> defaultDataSet != null ? defaultDataSet.createSubset(0, (int) (numWords * 0.6)) : null);
         LanguageWordsDataSet cvDataSet = getDataSet(cvDataSetName, () -> defaultDataSet != null ? defaultDataSet.createSubset(trainingDataSet.numWords(), (int) (numWords * 0.2)) : null);
         IntFunction<BatchFullDataSetStream> trainingDataSetGenerator = size -> trainingDataSet.createRandomSubset(Math.min(size, trainingDataSet.numWords()), random)
-                .buildDataSetGenerator(inputLettersCount, maxWordLength, letterEncoder, batchSize);
+                .buildDataSetGenerator(featureExtractor, batchSize);
         StreamCostFunction<LanguageClassifier> cost = LanguageClassifier.getCostFunction(lambda);
 
         StreamSupervisedLearningAlgorithm<LanguageClassifier> learningAlgorithm = LanguageClassifier.getStreamAlgorithm(
-                LanguageClassifier.getLanguageRecognizerGenerator(inputLettersCount, maxWordLength, letterEncoder, random, languageClassifier.getLanguages()),
+                () -> languageClassifier.newUntrained(featureExtractor, random, languageClassifier.getAllWordsDataSet()),
                 alpha, lambda, iterations
         );
-        BatchFullDataSetStream cvDataSetStream = cvDataSet.buildDataSetGenerator(inputLettersCount, maxWordLength, letterEncoder, batchSize);
+        BatchFullDataSetStream cvDataSetStream = cvDataSet.buildDataSetGenerator(featureExtractor, batchSize);
 
         LearningCurve learningCurve = LearningCurve.generateSetSizeLearningCurve(learningAlgorithm, cost, trainingDataSetGenerator, cvDataSetStream, testSizes);
         if (displayWithGui) {
@@ -685,6 +1038,10 @@ public class Cli {
                 err.println("Output file must be specified");
                 return;
             }
+            if (cmd.hasOption("m")) {
+                convertFile(cmd, Paths.get(inputFile), Paths.get(output));
+                return;
+            }
             try {
                 LetterEncodingFileConverter.convert(Paths.get(inputFile), output, c -> {
                     if (c >= 'a' && c <= 'z') return String.valueOf(c);
@@ -699,6 +1056,481 @@ public class Cli {
         }
     }
 
+    private void convertFile(CommandLine cmd, Path inputFile, Path outputFile) {
+        int threads = Integer.parseInt(cmd.getOptionValue("t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        try {
+            Map<Character, String> mapping = new HashMap<>();
+            for (char c = 'a'; c <= 'z'; c++) {
+                mapping.put(c, String.valueOf(c));
+            }
+            mapping.putAll(LetterEncodingFileConverter.readMappingTable(Paths.get(cmd.getOptionValue("m"))));
+            LetterEncodingFileConverter.Result result = LetterEncodingFileConverter.convert(inputFile, outputFile, mapping, threads);
+            double seconds = result.getNanos() / 1e9;
+            out.printf("Converted %d lines, dropped %d in %.3fs (%.0f lines/s, %.1f MB/s read)%n", result.getLinesWritten(), result.getLinesDropped(),
+                    seconds, result.getLinesRead() / seconds, Files.size(inputFile) / 1e6 / seconds);
+            List<Map.Entry<Character, Long>> unmapped = result.getUnmappedCharacters();
+            for (Map.Entry<Character, Long> entry : unmapped.subList(0, Math.min(10, unmapped.size()))) {
+                out.printf("  '%c' (U+%04X): %d lines%n", entry.getKey(), (int) entry.getKey().charValue(), entry.getValue());
+            }
+            if (unmapped.size() > 10) {
+                out.printf("  ... %d more unmapped characters%n", unmapped.size() - 10);
+            }
+            if (cmd.hasOption("u")) {
+                LetterEncodingFileConverter.writeUnmappedStatistics(result, Paths.get(cmd.getOptionValue("u")));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void corpus(CommandLine cmd) {
+        String[] fileValues = cmd.getOptionValues("f");
+        if (fileValues != null) {
+            Path file = Paths.get(fileValues[1]);
+            try (InputStream inputStream = Files.newInputStream(Paths.get(fileValues[0]))) {
+                Corpus.parseText(inputStream).write(file);
+                long startTime = System.nanoTime();
+                Corpus mapped = Corpus.map(file);
+                long nanos = System.nanoTime() - startTime;
+                out.printf("%d words, %d bytes, maps in %.3fms (%s)%n", mapped.getWords().size(), Files.size(file), nanos / 1000000.0, file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+        String output = cmd.getOptionValue("o");
+        Collection<String> iso6391s = cmd.hasOption("l") ? Arrays.asList(cmd.getOptionValues("l")) : new TreeSet<>(languagesLoader.keySet());
+        for (String iso6391 : iso6391s) {
+            Supplier<Language> languageSupplier = languagesLoader.get(iso6391);
+            if (languageSupplier == null) {
+                err.println("Unknown language: " + iso6391);
+                continue;
+            }
+            Language language = languageSupplier.get();
+            if (!(language instanceof BasicLanguage)) {
+                err.println("Language has no word list resource: " + iso6391);
+                continue;
+            }
+            String wordsFile = ((BasicLanguage) language).getWordsFile();
+            Path file = Paths.get(output, wordsFile.replaceFirst("^/", "") + Corpus.EXTENSION);
+            try {
+                Corpus.load(wordsFile).write(file);
+                long startTime = System.nanoTime();
+                Corpus compiled = Corpus.read(file);
+                long nanos = System.nanoTime() - startTime;
+                out.printf("%s: %d words, %d bytes, loads in %.3fms (%s)%n", iso6391, compiled.getWords().size(), Files.size(file), nanos / 1000000.0, file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void bench(CommandLine cmd) {
+        int dest = getDestSlot(cmd, 0, true);
+        LanguageClassifier languageClassifier = languageClassifiers[dest];
+        if (cmd.hasOption("p")) {
+            if (!cmd.hasOption("a") || !cmd.hasOption("i")) {
+                err.println("Precision benchmark requires -a <alpha> and -i <iterations>");
+                return;
+            }
+            double alpha = Double.parseDouble(cmd.getOptionValue("a"));
+            double lambda = Double.parseDouble(cmd.getOptionValue("l", "0"));
+            int iterations = Integer.parseInt(cmd.getOptionValue("i"));
+            int batchSize = Integer.parseInt(cmd.getOptionValue("b", "1"));
+            int checkpoints = Integer.parseInt(cmd.getOptionValue("n", "10"));
+            if (alpha <= 0) throw new IllegalArgumentException(String.format("learning rate (%f) must be greater than 0", alpha));
+            if (lambda < 0) throw new IllegalArgumentException(String.format("regularization parameter (%f) cannot be less than 0", lambda));
+            if (iterations <= 0) throw new IllegalArgumentException(String.format("number of iterations (%d) must be greater than 0", iterations));
+            if (batchSize <= 0) throw new IllegalArgumentException(String.format("batch size (%d) must be greater than 0", batchSize));
+            LanguageWordsDataSet trainingDataSet = getDataSet(cmd.getOptionValue("d"), languageClassifier::getAllWordsDataSet);
+            LanguageWordsDataSet cvDataSet = getDataSet(cmd.getOptionValue("c"), languageClassifier::getAllWordsDataSet);
+            if (trainingDataSet == null || cvDataSet == null) {
+                return;
+            }
+            out.printf("%10s %16s %16s %12s %12s%n", "Iteration", "Cost (double)", "Cost (float)", "Time (double)", "Time (float)");
+            for (TrainingBenchmark.ConvergencePoint point : TrainingBenchmark.comparePrecision(languageClassifier, trainingDataSet, cvDataSet,
+                    alpha, lambda, iterations, batchSize, checkpoints)) {
+                out.printf("%10d %16.10f %16.10f %11.3fs %11.3fs%n", point.getIteration(), point.getDoubleCost(), point.getFloatCost(),
+                        point.getDoubleNanos() / 1000000000.0, point.getFloatNanos() / 1000000000.0);
+            }
+        } else if (cmd.hasOption("s")) {
+            int predictions = Integer.parseInt(cmd.getOptionValue("k", "1000000"));
+            String file = cmd.getOptionValue("f");
+            Supplier<LanguageClassifier> loader = () -> {
+                if (file == null) {
+                    return languageClassifier;
+                }
+                try {
+                    return LanguageClassifier.loadFromFileBinary(file);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+            out.printf("%-20s %12s %16s%n", "Point", "Elapsed", "Predictions/s");
+            for (InferenceBenchmark.StartupPoint point : InferenceBenchmark.startup(loader, predictions, cmd.hasOption("w"), random)) {
+                out.printf("%-20s %11.3fs %16.0f%n", point.getLabel(), point.getNanos() / 1000000000.0, point.getPredictionsPerSecond());
+            }
+        }
+    }
+
+    private void sweep(CommandLine cmd) {
+        int iterations = Integer.parseInt(cmd.getOptionValue("i"));
+        int threads = Integer.parseInt(cmd.getOptionValue("t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        TrainingPrecision precision = TrainingPrecision.valueOf(cmd.getOptionValue("p", "double").toUpperCase());
+        Integer samples = cmd.hasOption("n") ? Integer.parseInt(cmd.getOptionValue("n")) : null;
+        if (samples != null && samples <= 0) throw new IllegalArgumentException(String.format("number of samples (%d) must be greater than 0", samples));
+
+        int dest = getDestSlot(cmd, 0, true);
+        LanguageClassifier languageClassifier = languageClassifiers[dest];
+        LanguageWordsDataSet trainingDataSet = getDataSet(cmd.getOptionValue("d"), languageClassifier::getAllWordsDataSet);
+        LanguageWordsDataSet cvDataSet = getDataSet(cmd.getOptionValue("e"), () -> null);
+        if (trainingDataSet == null || cvDataSet == null) {
+            return;
+        }
+        String[] alphas = cmd.getOptionValues("a");
+        String[] lambdas = cmd.hasOption("l") ? cmd.getOptionValues("l") : new String[]{"0"};
+        String[] batchSizes = cmd.hasOption("b") ? cmd.getOptionValues("b") : new String[]{"1"};
+        String[] maxWordLengths;
+        if (cmd.hasOption("c")) {
+            maxWordLengths = Arrays.stream(cmd.getOptionValues("c"))
+                    .mapToInt(fraction -> trainingDataSet.findMaxWordLengthForDataSetCoverage(Double.parseDouble(fraction)))
+                    .distinct().mapToObj(String::valueOf).toArray(String[]::new);
+        } else {
+            maxWordLengths = cmd.hasOption("m") ? cmd.getOptionValues("m") : new String[]{String.valueOf(languageClassifier.getMaxWordLength())};
+        }
+
+        List<HyperparameterSweep.Candidate> candidates = new ArrayList<>();
+        if (samples != null) {
+            for (int i = 0; i < samples; i++) {
+                candidates.add(new HyperparameterSweep.Candidate(sample(alphas, false), sample(lambdas, false),
+                        (int) sample(batchSizes, true), (int) sample(maxWordLengths, true)));
+            }
+        } else {
+            for (String alpha : alphas) {
+                for (String lambda : lambdas) {
+                    for (String batchSize : batchSizes) {
+                        for (String maxWordLength : maxWordLengths) {
+                            candidates.add(new HyperparameterSweep.Candidate(parseGridValue(alpha), parseGridValue(lambda),
+                                    (int) parseGridValue(batchSize), (int) parseGridValue(maxWordLength)));
+                        }
+                    }
+                }
+            }
+        }
+        out.printf("Training %d candidates on %d threads...%n", candidates.size(), threads);
+        List<HyperparameterSweep.Result> results = HyperparameterSweep.run(languageClassifier, trainingDataSet, cvDataSet, candidates, iterations, precision, threads, random);
+
+        int top = Math.min(Integer.parseInt(cmd.getOptionValue("k", String.valueOf(results.size()))), results.size());
+        out.printf("%4s %12s %12s %8s %8s %16s %12s %10s%n", "Rank", "Alpha", "Lambda", "Batch", "Length", "CV cost", "Accuracy", "Time");
+        for (int i = 0; i < top; i++) {
+            HyperparameterSweep.Result result = results.get(i);
+            HyperparameterSweep.Candidate candidate = result.getCandidate();
+            out.printf("%4d %12.6g %12.6g %8d %8d %16.10f %11.4f%% %9.3fs%n", i + 1, candidate.getAlpha(), candidate.getLambda(), candidate.getBatchSize(),
+                    candidate.getMaxWordLength(), result.getCvCost(), result.getAccuracy() * 100.0, result.getTrainingNanos() / 1000000000.0);
+        }
+        if (cmd.hasOption("o") && !results.isEmpty()) {
+            int output = Integer.parseInt(cmd.getOptionValue("o"));
+            if (output < 0 || output >= languageClassifiers.length) {
+                throw new RuntimeException("Invalid slot id " + output + " (min: 0, max: " + (languageClassifiers.length - 1));
+            }
+            out.println("Retraining best candidate...");
+            languageClassifiers[output] = HyperparameterSweep.retrain(languageClassifier, trainingDataSet, results.get(0), iterations, precision);
+            out.printf("Stored best classifier in slot %d%n", output);
+        }
+    }
+
+    private static double parseGridValue(String value) {
+        if (value.contains(":")) {
+            throw new IllegalArgumentException(String.format("range (%s) requires random sampling with -n", value));
+        }
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * Picks one of the values at random; a {@code <min>:<max>} range is then sampled uniformly, as an integer when
+     * {@code integer} is set and on a log scale when both bounds are positive otherwise.
+     */
+    private double sample(String[] values, boolean integer) {
+        String value = values[random.nextInt(values.length)];
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            return Double.parseDouble(value);
+        }
+        double min = Double.parseDouble(value.substring(0, separator));
+        double max = Double.parseDouble(value.substring(separator + 1));
+        if (min > max) throw new IllegalArgumentException(String.format("range minimum (%s) cannot be greater than maximum (%s)", min, max));
+        if (integer) {
+            return (long) min + random.nextInt((int) ((long) max - (long) min + 1));
+        }
+        if (min > 0) {
+            return Math.exp(Math.log(min) + random.nextDouble() * (Math.log(max) - Math.log(min)));
+        }
+        return min + random.nextDouble() * (max - min);
+    }
+
+    private void kFold(CommandLine cmd) {
+        int k = Integer.parseInt(cmd.getOptionValue("k"));
+        double alpha = Double.parseDouble(cmd.getOptionValue("a"));
+        double lambda = Double.parseDouble(cmd.getOptionValue("l", "0"));
+        int iterations = Integer.parseInt(cmd.getOptionValue("i"));
+        int batchSize = Integer.parseInt(cmd.getOptionValue("b", "1"));
+        int threads = Integer.parseInt(cmd.getOptionValue("t", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        TrainingPrecision precision = TrainingPrecision.valueOf(cmd.getOptionValue("p", "double").toUpperCase());
+        Random foldRandom = cmd.hasOption("s") ? new Random(Long.parseLong(cmd.getOptionValue("s"))) : random;
+
+        int dest = getDestSlot(cmd, 0, true);
+        LanguageClassifier languageClassifier = languageClassifiers[dest];
+        LanguageWordsDataSet dataSet = getDataSet(cmd.getOptionValue("d"), languageClassifier::getAllWordsDataSet);
+        if (dataSet == null) {
+            return;
+        }
+        CrossValidation.Result result = CrossValidation.run(languageClassifier, dataSet, k,
+                () -> new TrainingOptions(alpha, iterations).lambda(lambda).batchSize(batchSize).precision(precision), threads, foldRandom);
+        if (cmd.hasOption("v")) {
+            for (CrossValidation.FoldResult fold : result.getFolds()) {
+                out.printf("Fold %d: accuracy %.10f, cost %.10f%n", fold.getFold(), fold.getAccuracy() * 100.0, fold.getCost());
+            }
+        }
+        out.printf("Accuracy: %.10f (stddev %.10f)%n", result.getMeanAccuracy() * 100.0, result.getAccuracyStandardDeviation() * 100.0);
+        out.printf("Cost: %.10f (stddev %.10f)%n", result.getMeanCost(), result.getCostStandardDeviation());
+    }
+
+    private void group(CommandLine cmd) {
+        List<LanguageClassifier> members = new ArrayList<>();
+        for (int i = 0; i < cmd.getArgs().length; i++) {
+            members.add(languageClassifiers[getDestSlot(cmd, i, true)]);
+        }
+        if (cmd.hasOption("f")) {
+            for (String directory : cmd.getOptionValues("f")) {
+                try {
+                    members.add(LanguageClassifier.loadFromFileBinary(directory));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        if (members.isEmpty()) {
+            err.println("No classifiers given");
+            return;
+        }
+        ModelGroup.Combination combination = "voting".equalsIgnoreCase(cmd.getOptionValue("m")) ? ModelGroup.Combination.VOTING : ModelGroup.Combination.ONE_VS_REST;
+        ModelGroup group = ModelGroup.of(combination, members.toArray(new LanguageClassifier[0]));
+        out.printf("%d classifiers, %d encodings, languages: %s%n", group.numModels(), group.numEncodings(), Arrays.toString(group.getLanguages()));
+
+        if (cmd.hasOption("w")) {
+            Language[] languages = group.getLanguages();
+            List<String> words = Arrays.asList(cmd.getOptionValues("w"));
+            double[][] scores = group.scores(words);
+            for (int row = 0; row < words.size(); row++) {
+                double[] wordScores = scores[row];
+                Integer[] ranking = IntStream.range(0, languages.length).boxed()
+                        .sorted(Comparator.comparingDouble((Integer i) -> wordScores[i]).reversed())
+                        .toArray(Integer[]::new);
+                out.printf("%s: %s%n", words.get(row), languages[ranking[0]]);
+                if (cmd.hasOption("v")) {
+                    for (int i : ranking) {
+                        out.printf("\t%s) %.10f%n", languages[i].getName(), wordScores[i]);
+                    }
+                }
+            }
+            return;
+        }
+
+        LanguageWordsDataSet dataSet = getDataSet(cmd.getOptionValue("d"), members.get(0)::getAllWordsDataSet);
+        if (dataSet == null) {
+            return;
+        }
+        List<String> allWords = dataSet.getWords();
+        List<String> words = allWords.subList(0, Math.min(Integer.parseInt(cmd.getOptionValue("b")), allWords.size()));
+        List<ModelGroup> separate = new ArrayList<>(members.size());
+        for (LanguageClassifier member : members) {
+            separate.add(ModelGroup.of(combination, member));
+        }
+        // Once untimed so both paths are compiled before measuring
+        group.scores(words);
+        separate.forEach(model -> model.scores(words));
+        long startTime = System.nanoTime();
+        group.scores(words);
+        long groupNanos = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        separate.forEach(model -> model.scores(words));
+        long separateNanos = System.nanoTime() - startTime;
+        out.printf("Group: %.3fms, separate: %.3fms for %d words (%.2fx)%n", groupNanos / 1000000.0, separateNanos / 1000000.0, words.size(), (double) separateNanos / groupNanos);
+    }
+
+    private void cascade(CommandLine cmd) {
+        String name = cmd.getArgs().length >= 1 ? cmd.getArgs()[0] : "default";
+        double coverage = Double.parseDouble(cmd.getOptionValue("c", "0.99"));
+        try {
+            if (cmd.hasOption("g")) {
+                List<Language[]> groups = new ArrayList<>();
+                for (String group : cmd.getOptionValues("g")) {
+                    groups.add(parseLanguages(group.split(",")));
+                }
+                cascades.put(name, CascadeClassifier.create(groups, coverage, random));
+            } else if (cmd.hasOption("s")) {
+                cascades.put(name, CascadeClassifier.create(CascadeClassifier.groupByScript(parseLanguages(cmd.getOptionValues("s"))), coverage, random));
+            } else if (cmd.hasOption("f")) {
+                cascades.put(name, CascadeClassifier.loadFromFileBinary(cmd.getOptionValue("f")));
+            }
+            CascadeClassifier cascade = cascades.get(name);
+            if (cascade == null) {
+                err.println("No cascade named " + name);
+                return;
+            }
+            if (cmd.hasOption("g") || cmd.hasOption("s") || cmd.hasOption("f")) {
+                showCascade(cascade);
+            }
+
+            if (cmd.hasOption("a")) {
+                double alpha = Double.parseDouble(cmd.getOptionValue("a"));
+                int numIterations = Integer.parseInt(cmd.getOptionValue("i", "1"));
+                double lambda = Double.parseDouble(cmd.getOptionValue("l", "0"));
+                int batchSize = Integer.parseInt(cmd.getOptionValue("b", "1"));
+                List<TrainingResult> results = cascade.train(() -> new TrainingOptions(alpha, numIterations).lambda(lambda).batchSize(batchSize).random(random));
+                out.printf("Trained %d classifiers%n", results.size());
+            }
+            if (cmd.hasOption("o")) {
+                cascade.saveToFileBinary(cmd.getOptionValue("o"));
+                out.println("Saved");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        CascadeClassifier cascade = cascades.get(name);
+
+        if (cmd.hasOption("w")) {
+            int topGroups = Integer.parseInt(cmd.getOptionValue("k", "1"));
+            LanguageGroup[] groups = cascade.getGroups();
+            for (String word : cmd.getOptionValues("w")) {
+                out.printf("%s: %s (%s)%n", word, cascade.predict(word), groups[cascade.predictGroup(word)]);
+                if (cmd.hasOption("v")) {
+                    Map<Language, Double> results = cascade.process(word, topGroups);
+                    List<Language> rankedResults = new ArrayList<>(results.keySet());
+                    rankedResults.sort(Comparator.comparingDouble(results::get).reversed());
+                    for (Language language : rankedResults) {
+                        out.printf("\t%s) %.10f%n", language.getName(), results.get(language));
+                    }
+                }
+            }
+        }
+        if (cmd.hasOption("e")) {
+            LanguageWordsDataSet dataSet = getDataSet(cmd.getOptionValue("d"), () -> new LanguageWordsDataSet(random, cascade.getLanguages()));
+            if (dataSet == null) {
+                return;
+            }
+            int words = Math.min(Integer.parseInt(cmd.getOptionValue("e")), dataSet.numWords());
+            out.printf("Accuracy: %.4f%% (%d words)%n", cascade.accuracy(words, dataSet) * 100, words);
+        }
+    }
+
+    private void showCascade(CascadeClassifier cascade) {
+        LanguageClassifier coarseClassifier = cascade.getCoarseClassifier();
+        out.printf("Coarse: %d inputs per position, max word length %d, groups: %s%n", coarseClassifier.getInputLettersCount(),
+                coarseClassifier.getMaxWordLength(), Arrays.toString(cascade.getGroups()));
+        LanguageGroup[] groups = cascade.getGroups();
+        for (int g = 0; g < groups.length; g++) {
+            LanguageClassifier groupClassifier = cascade.getGroupClassifier(g);
+            if (groupClassifier != null) {
+                out.printf("%s: %d inputs per position, max word length %d%n", groups[g], groupClassifier.getInputLettersCount(), groupClassifier.getMaxWordLength());
+            } else {
+                out.printf("%s: single language%n", groups[g]);
+            }
+        }
+        out.printf("A single classifier would have %d inputs per position%n", Language.countDistinctLetters(cascade.getLanguages()));
+    }
+
+    private void quantize(CommandLine cmd) {
+        QuantizedLanguageClassifier.Precision precision = cmd.hasOption("i") ? QuantizedLanguageClassifier.Precision.INT8 : QuantizedLanguageClassifier.Precision.FLOAT32;
+        String file = cmd.getOptionValue("f");
+
+        int dest = getDestSlot(cmd, 0, true);
+        LanguageClassifier languageClassifier = languageClassifiers[dest];
+        LanguageWordsDataSet dataSet = getDataSet(cmd.getOptionValue("d"), languageClassifier::getAllWordsDataSet);
+        if (dataSet == null) {
+            return;
+        }
+        int words = Integer.parseInt(cmd.getOptionValue("n", String.valueOf(dataSet.numWords())));
+        QuantizedLanguageClassifier quantized = QuantizedLanguageClassifier.quantize(languageClassifier, precision);
+        out.print(quantized.compare(languageClassifier, dataSet, words));
+        out.printf("Inference kernel: %s%n", quantized.getKernelName());
+        if (file != null) {
+            try {
+                quantized.saveToFile(file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            out.println("Saved");
+        }
+    }
+
+    private void serve(CommandLine cmd) {
+        if (cmd.hasOption("r")) {
+            if (server == null) {
+                err.println("No server running");
+                return;
+            }
+            if (!cmd.hasOption("d")) {
+                // A classifier's own data set is what it was trained on, so accuracy on it says little about the model
+                err.println("Reloading requires a validation data set (-d)");
+                return;
+            }
+            LanguageWordsDataSet validationDataSet = getDataSet(cmd.getOptionValue("d"), () -> null);
+            if (validationDataSet == null) {
+                return;
+            }
+            int sampleSize = Integer.parseInt(cmd.getOptionValue("n", "1000"));
+            double minAccuracy = Double.parseDouble(cmd.getOptionValue("m", "0"));
+            String directory = cmd.getOptionValue("r");
+            server.getModelRegistry().loadAsync(directory, validationDataSet, sampleSize, minAccuracy).whenComplete((result, failure) -> {
+                if (failure != null) {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                    err.printf("Kept current model, loading %s failed: %s%n", directory, cause);
+                } else if (result.isSwapped()) {
+                    out.printf("Swapped in model %d from %s (accuracy %.4f%%, %.3fs)%n", result.getVersion(), directory, result.getAccuracy() * 100.0, result.getNanos() / 1000000000.0);
+                } else {
+                    err.printf("Kept current model, %s was rejected: %s%n", directory, result.getReason());
+                }
+            });
+            out.printf("Loading %s in the background%n", directory);
+            return;
+        }
+        if (cmd.hasOption("s") || cmd.hasOption("x")) {
+            if (server == null) {
+                err.println("No server running");
+                return;
+            }
+            out.print(server.stats());
+            if (cmd.hasOption("x")) {
+                server.close();
+                server = null;
+                out.println("Server stopped");
+            }
+            return;
+        }
+        if (server != null) {
+            err.printf("Server already running on port %d%n", server.getPort());
+            return;
+        }
+        int port = Integer.parseInt(cmd.getOptionValue("p", "8080"));
+        int maxBatchSize = Integer.parseInt(cmd.getOptionValue("b", "256"));
+        long maxDelayMicros = Long.parseLong(cmd.getOptionValue("t", "2000"));
+        int threads = Integer.parseInt(cmd.getOptionValue("w", String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+        if (port < 0) throw new IllegalArgumentException(String.format("port (%d) cannot be less than 0", port));
+        try {
+            if (cmd.hasOption("f")) {
+                server = ClassificationServer.load(cmd.getOptionValue("f"), port, maxBatchSize, maxDelayMicros, threads);
+            } else {
+                int dest = getDestSlot(cmd, 0, true);
+                server = new ClassificationServer(languageClassifiers[dest], port, maxBatchSize, maxDelayMicros, threads);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        server.start();
+        out.printf("Serving on http://localhost:%d (/classify, /paragraph, /stats)%n", server.getPort());
+    }
+
     private void help(CommandLine cmd) {
         String[] args = cmd.getArgs();
         String command = args.length >= 1 ? args[0] : null;
@@ -803,6 +1635,9 @@ public class Cli {
                 err.println("Unknown command: " + command);
             }
         } while (!QUIT_COMMAND.equals(input[0]));
+        if (server != null) {
+            server.close();
+        }
     }
 
     private static Option option(String opt, String longOpt, String description, int args) {
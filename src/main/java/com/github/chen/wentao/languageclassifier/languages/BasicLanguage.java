@@ -1,10 +1,5 @@
 package com.github.chen.wentao.languageclassifier.languages;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -17,6 +12,7 @@ public class BasicLanguage implements Language {
     private final String name;
     private final Set<Character> letters;
     private final List<String> words;
+    private final String wordsFile;
 
     public BasicLanguage(String iso6391, String name, String wordsFile) {
         this(iso6391, name, null, wordsFile);
@@ -25,29 +21,24 @@ public class BasicLanguage implements Language {
     public BasicLanguage(String iso6391, String name, String letters, String wordsFile) {
         this.iso6391 = iso6391;
         this.name = name;
-        Set<Character> lettersSet = new HashSet<>();
+        this.wordsFile = wordsFile;
+        Corpus corpus = Corpus.load(wordsFile);
+        Set<Character> lettersSet;
         if (letters != null) {
+            lettersSet = new HashSet<>();
             letters.chars().forEach(c -> lettersSet.add((char) c));
-        }
-        List<String> words = new ArrayList<>();
-        try (InputStream inputStream = BasicLanguage.class.getResourceAsStream(wordsFile)) {
-            try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
-                try (BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    String line;
-                    while ((line = bufferedReader.readLine()) != null) {
-                        String word = line.split(" ")[0].toLowerCase();
-                        words.add(word);
-                        if (letters == null) {
-                            word.chars().forEach(c -> lettersSet.add((char) c));
-                        }
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        } else {
+            lettersSet = corpus.getLetters();
         }
         this.letters = Collections.unmodifiableSet(lettersSet);
-        this.words = Collections.unmodifiableList(words);
+        this.words = corpus.getWords();
+    }
+
+    /**
+     * @return the class path resource the words were loaded from
+     */
+    public String getWordsFile() {
+        return wordsFile;
     }
 
     @Override
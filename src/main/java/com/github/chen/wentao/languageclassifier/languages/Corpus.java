@@ -0,0 +1,280 @@
+package com.github.chen.wentao.languageclassifier.languages;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Word list of a language. Loaded corpora are cached per resource for the whole process, so every {@link BasicLanguage}
+ * using the same file shares one copy. A resource is read from its precompiled binary form ({@code <resource>.lcc})
+ * when one is on the class path and parsed from text otherwise.
+ * <p>
+ * Binary format, big endian: magic, version, letter count, word count, arena length in chars, the sorted letters as
+ * UTF-16 chars, word count + 1 word start offsets into the arena, word count frequencies (-1 when unknown), then the
+ * UTF-16 arena of all words.
+ */
+public final class Corpus {
+
+    public static final String EXTENSION = ".lcc";
+
+    private static final int MAGIC = 0x4C434331;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    private static final ConcurrentMap<String, Corpus> CACHE = new ConcurrentHashMap<>();
+
+    private final char[] letters;
+    private final List<String> words;
+    private final IntBuffer frequencies;
+
+    private Corpus(char[] letters, String[] words, int[] frequencies) {
+        this(letters, Collections.unmodifiableList(Arrays.asList(words)), IntBuffer.wrap(frequencies));
+    }
+
+    private Corpus(char[] letters, List<String> words, IntBuffer frequencies) {
+        this.letters = letters;
+        this.words = words;
+        this.frequencies = frequencies;
+    }
+
+    public static Corpus load(String resource) {
+        return CACHE.computeIfAbsent(resource, Corpus::loadResource);
+    }
+
+    private static Corpus loadResource(String resource) {
+        try {
+            try (InputStream inputStream = Corpus.class.getResourceAsStream(resource + EXTENSION)) {
+                if (inputStream != null) {
+                    return read(ByteBuffer.wrap(readFully(inputStream)));
+                }
+            }
+            try (InputStream inputStream = Corpus.class.getResourceAsStream(resource)) {
+                if (inputStream == null) {
+                    throw new IOException("Resource not found: " + resource);
+                }
+                return parseText(inputStream);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses lines of {@code <word> [<frequency>]}, lower casing the words.
+     */
+    public static Corpus parseText(InputStream inputStream) throws IOException {
+        List<String> words = new ArrayList<>();
+        List<Integer> frequencies = new ArrayList<>();
+        Set<Character> letters = new HashSet<>();
+        try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                String word = parts[0].toLowerCase();
+                words.add(word);
+                frequencies.add(parts.length > 1 ? parseFrequency(parts[1]) : -1);
+                word.chars().forEach(c -> letters.add((char) c));
+            }
+        }
+        char[] sortedLetters = new char[letters.size()];
+        int i = 0;
+        for (char letter : letters) {
+            sortedLetters[i++] = letter;
+        }
+        Arrays.sort(sortedLetters);
+        return new Corpus(sortedLetters, words.toArray(new String[0]), frequencies.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static int parseFrequency(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a binary corpus by memory mapping the file.
+     */
+    public static Corpus read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Corpus read(ByteBuffer buffer) throws IOException {
+        Layout layout = new Layout(buffer);
+        char[] arena = new char[layout.arena.remaining()];
+        layout.arena.get(arena);
+        String[] words = new String[layout.wordCount];
+        for (int i = 0; i < layout.wordCount; i++) {
+            words[i] = new String(arena, layout.offsets.get(i), layout.offsets.get(i + 1) - layout.offsets.get(i));
+        }
+        int[] frequencies = new int[layout.wordCount];
+        layout.frequencies.get(frequencies);
+        return new Corpus(layout.letters, words, frequencies);
+    }
+
+    /**
+     * Maps a binary corpus without copying its words onto the heap. The words are decoded from the mapped file on every
+     * access, so the heap only ever holds the words in use, however large the corpus is.
+     */
+    public static Corpus map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Layout layout = new Layout(buffer);
+        return new Corpus(layout.letters, new MappedWordList(layout.offsets, layout.arena), layout.frequencies);
+    }
+
+    public void write(Path file) throws IOException {
+        int arenaLength = 0;
+        for (String word : words) {
+            arenaLength += word.length();
+        }
+        int wordCount = words.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + letters.length * Character.BYTES
+                + (wordCount * 2 + 1) * Integer.BYTES + arenaLength * Character.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(letters.length).putInt(wordCount).putInt(arenaLength);
+        for (char letter : letters) {
+            buffer.putChar(letter);
+        }
+        IntBuffer offsets = buffer.asIntBuffer();
+        int offset = 0;
+        for (String word : words) {
+            offsets.put(offset);
+            offset += word.length();
+        }
+        offsets.put(offset);
+        offsets.put(frequencies.duplicate());
+        buffer.position(buffer.position() + offsets.position() * Integer.BYTES);
+        CharBuffer arena = buffer.asCharBuffer();
+        for (String word : words) {
+            arena.put(word);
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            outputStream.write(buffer.array());
+        }
+    }
+
+    public List<String> getWords() {
+        return words;
+    }
+
+    public Set<Character> getLetters() {
+        Set<Character> lettersSet = new HashSet<>();
+        for (char letter : letters) {
+            lettersSet.add(letter);
+        }
+        return lettersSet;
+    }
+
+    /**
+     * @return the frequency listed for the word at the index, or -1 if the word list has none
+     */
+    public int frequency(int index) {
+        return frequencies.get(index);
+    }
+
+    /**
+     * Sections of a binary corpus, as views of the underlying buffer.
+     */
+    private static final class Layout {
+        private final char[] letters;
+        private final int wordCount;
+        private final IntBuffer offsets;
+        private final IntBuffer frequencies;
+        private final CharBuffer arena;
+
+        private Layout(ByteBuffer buffer) throws IOException {
+            buffer = buffer.duplicate();
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary corpus");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary corpus version: " + version);
+            }
+            int letterCount = buffer.getInt();
+            this.wordCount = buffer.getInt();
+            int arenaLength = buffer.getInt();
+            this.letters = new char[letterCount];
+            buffer.asCharBuffer().get(letters);
+            buffer.position(buffer.position() + letterCount * Character.BYTES);
+            this.offsets = slice(buffer, (wordCount + 1) * Integer.BYTES).asIntBuffer();
+            this.frequencies = slice(buffer, wordCount * Integer.BYTES).asIntBuffer();
+            this.arena = slice(buffer, arenaLength * Character.BYTES).asCharBuffer();
+        }
+
+        private static ByteBuffer slice(ByteBuffer buffer, int bytes) {
+            ByteBuffer slice = buffer.slice();
+            slice.limit(bytes);
+            buffer.position(buffer.position() + bytes);
+            return slice;
+        }
+    }
+
+    private static final class MappedWordList extends AbstractList<String> implements RandomAccess {
+        private final IntBuffer offsets;
+        private final CharBuffer arena;
+
+        private MappedWordList(IntBuffer offsets, CharBuffer arena) {
+            this.offsets = offsets;
+            this.arena = arena;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int start = offsets.get(index);
+            int end = offsets.get(index + 1);
+            char[] word = new char[end - start];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = arena.get(start + i);
+            }
+            return new String(word);
+        }
+
+        @Override
+        public int size() {
+            return offsets.limit() - 1;
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(inputStream.available(), 8192));
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -19,10 +19,14 @@ public interface Language extends Serializable {
     List<String> getWords();
 
     static int countDistinctLetters(Language... languages) {
+        return distinctLetters(languages).size();
+    }
+
+    static Set<Character> distinctLetters(Language... languages) {
         Set<Character> letters = new HashSet<>();
         for (Language language : languages) {
             letters.addAll(language.getLetters());
         }
-        return letters.size();
+        return letters;
     }
 }
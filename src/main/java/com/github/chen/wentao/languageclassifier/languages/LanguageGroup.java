@@ -0,0 +1,70 @@
+package com.github.chen.wentao.languageclassifier.languages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Several languages treated as one, such as a language family or the languages of a script. Its words and letters are
+ * the unions of its members'.
+ */
+public class LanguageGroup implements Language {
+
+    private static final long serialVersionUID = 6488203958725361180L;
+    private final String name;
+    private final Language[] languages;
+    private transient Set<Character> letters;
+    private transient List<String> words;
+
+    public LanguageGroup(String name, Language... languages) {
+        if (languages.length == 0) throw new IllegalArgumentException("A language group must have at least 1 language.");
+        this.name = name;
+        this.languages = languages.clone();
+    }
+
+    public Language[] getLanguages() {
+        return languages.clone();
+    }
+
+    @Override
+    public String getIso6391() {
+        return name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<Character> getLetters() {
+        if (letters == null) {
+            letters = Collections.unmodifiableSet(Language.distinctLetters(languages));
+        }
+        return letters;
+    }
+
+    @Override
+    public int numLetters() {
+        return getLetters().size();
+    }
+
+    @Override
+    public List<String> getWords() {
+        if (words == null) {
+            Set<String> allWords = new LinkedHashSet<>();
+            for (Language language : languages) {
+                allWords.addAll(language.getWords());
+            }
+            words = Collections.unmodifiableList(new ArrayList<>(allWords));
+        }
+        return words;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
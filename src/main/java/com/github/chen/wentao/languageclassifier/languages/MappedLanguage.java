@@ -0,0 +1,80 @@
+package com.github.chen.wentao.languageclassifier.languages;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Language whose words stay in a memory mapped binary corpus file instead of on the heap, for word lists too large to
+ * load. Serializes as its file path and maps the file again when read back.
+ */
+public class MappedLanguage implements Language {
+
+    private static final long serialVersionUID = 3171706420866046419L;
+    private final String iso6391;
+    private final String name;
+    private final String corpusFile;
+    private transient Set<Character> letters;
+    private transient List<String> words;
+
+    public MappedLanguage(String iso6391, String name, String corpusFile) {
+        this.iso6391 = iso6391;
+        this.name = name;
+        this.corpusFile = corpusFile;
+        map();
+    }
+
+    private void map() {
+        Corpus corpus;
+        try {
+            corpus = Corpus.map(Paths.get(corpusFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.letters = Collections.unmodifiableSet(corpus.getLetters());
+        this.words = corpus.getWords();
+    }
+
+    public String getCorpusFile() {
+        return corpusFile;
+    }
+
+    @Override
+    public String getIso6391() {
+        return iso6391;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<Character> getLetters() {
+        return letters;
+    }
+
+    @Override
+    public int numLetters() {
+        return letters.size();
+    }
+
+    @Override
+    public List<String> getWords() {
+        return words;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        map();
+    }
+}
@@ -0,0 +1,285 @@
+package com.github.chen.wentao.languageclassifier.server;
+
+import com.github.chen.wentao.languageclassifier.LanguageClassifier;
+import com.github.chen.wentao.languageclassifier.ModelWarmup;
+import com.github.chen.wentao.languageclassifier.languages.Language;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ClassificationServer implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ClassificationServer.class.getName());
+
+    private final ModelRegistry modelRegistry;
+    private final HttpServer httpServer;
+    private final ExecutorService handlerExecutor;
+    private final MicroBatcher<String, Map<Language, Double>> batcher;
+    private final LatencyHistogram requestLatency = new LatencyHistogram("request");
+
+    public ClassificationServer(LanguageClassifier languageClassifier, int port, int maxBatchSize, long maxDelayMicros, int handlerThreads) throws IOException {
+        this(languageClassifier, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxBatchSize, maxDelayMicros, handlerThreads);
+    }
+
+    public ClassificationServer(LanguageClassifier languageClassifier, InetSocketAddress address, int maxBatchSize, long maxDelayMicros, int handlerThreads) throws IOException {
+        this(new ModelRegistry(languageClassifier), address, maxBatchSize, maxDelayMicros, handlerThreads);
+    }
+
+    public ClassificationServer(ModelRegistry modelRegistry, InetSocketAddress address, int maxBatchSize, long maxDelayMicros, int handlerThreads) throws IOException {
+        if (handlerThreads <= 0) throw new IllegalArgumentException(String.format("handler threads (%d) must be greater than 0", handlerThreads));
+        this.modelRegistry = modelRegistry;
+        // The model is read once per batch, so a batch never mixes models across a swap. Raw words are normalized by that
+        // model, so /classify and /paragraph score a word the same way.
+        this.batcher = new MicroBatcher<>(words -> modelRegistry.currentClassifier().processWords(words), maxBatchSize, maxDelayMicros, TimeUnit.MICROSECONDS, 1);
+        this.handlerExecutor = Executors.newFixedThreadPool(handlerThreads);
+        this.httpServer = HttpServer.create(address, 0);
+        this.httpServer.setExecutor(handlerExecutor);
+        this.httpServer.createContext("/classify", timed(this::classify));
+        this.httpServer.createContext("/paragraph", timed(this::paragraph));
+        this.httpServer.createContext("/stats", this::stats);
+    }
+
+    public static ClassificationServer load(String directoryName, int port, int maxBatchSize, long maxDelayMicros, int handlerThreads) throws IOException {
+        LanguageClassifier languageClassifier = LanguageClassifier.loadFromFileBinary(directoryName);
+        ModelWarmup.Report warmup = ModelWarmup.warmUp(languageClassifier, new Random());
+        LOGGER.info(() -> "Warmed up model from " + directoryName + ": " + warmup);
+        return new ClassificationServer(languageClassifier, port, maxBatchSize, maxDelayMicros, handlerThreads);
+    }
+
+    public void start() {
+        httpServer.start();
+        LOGGER.info(() -> "Classification server listening on " + httpServer.getAddress());
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        batcher.close();
+        handlerExecutor.shutdown();
+        modelRegistry.close();
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public LanguageClassifier getLanguageClassifier() {
+        return modelRegistry.currentClassifier();
+    }
+
+    public ModelRegistry getModelRegistry() {
+        return modelRegistry;
+    }
+
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    public MicroBatcher<String, Map<Language, Double>> getBatcher() {
+        return batcher;
+    }
+
+    public String stats() {
+        ModelRegistry.Model model = modelRegistry.current();
+        return String.format("model version=%d (%s)%n%s%n%s%n%s%nmean batch size=%.2f (max %d, max delay %dus)%n",
+                model.getVersion(), model.getSource() != null ? model.getSource() : "in memory", requestLatency.summary(), batcher.getQueueLatency().summary(), batcher.getBatchLatency().summary(),
+                batcher.meanBatchSize(), batcher.getMaxBatchSize(), TimeUnit.NANOSECONDS.toMicros(batcher.getMaxDelayNanos()));
+    }
+
+    private HttpHandler timed(HttpHandler handler) {
+        return exchange -> {
+            long startTime = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } finally {
+                requestLatency.record(System.nanoTime() - startTime);
+            }
+        };
+    }
+
+    private void classify(HttpExchange exchange) throws IOException {
+        List<String> words = new ArrayList<>();
+        if ("GET".equals(exchange.getRequestMethod())) {
+            String word = queryParameter(exchange, "word");
+            if (word == null) {
+                respond(exchange, 400, "Missing query parameter: word");
+                return;
+            }
+            words.add(word.trim());
+        } else if ("POST".equals(exchange.getRequestMethod())) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        words.add(line);
+                    }
+                }
+            }
+        } else {
+            respond(exchange, 405, "Unsupported method: " + exchange.getRequestMethod());
+            return;
+        }
+        List<Map<Language, Double>> results = classifyAll(exchange, words);
+        if (results == null) {
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        boolean bulk = "POST".equals(exchange.getRequestMethod());
+        if (bulk) {
+            json.append('[');
+        }
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendResult(json, words.get(i), results.get(i));
+        }
+        if (bulk) {
+            json.append(']');
+        }
+        respond(exchange, 200, json.toString());
+    }
+
+    private void paragraph(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "Unsupported method: " + exchange.getRequestMethod());
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                text.append(line).append(' ');
+            }
+        }
+        String[] words = text.toString().trim().split("\\s+");
+        List<Map<Language, Double>> results = classifyAll(exchange, Arrays.asList(words));
+        if (results == null) {
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        appendResult(json, null, modelRegistry.currentClassifier().combineWordScores(results));
+        respond(exchange, 200, json.toString());
+    }
+
+    /**
+     * Scores the words through the batcher, or responds with the error and returns null if that fails
+     */
+    private List<Map<Language, Double>> classifyAll(HttpExchange exchange, List<String> words) throws IOException {
+        List<CompletableFuture<Map<Language, Double>>> futures = batcher.submitAll(words);
+        List<Map<Language, Double>> results = new ArrayList<>(words.size());
+        try {
+            for (CompletableFuture<Map<Language, Double>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Interrupted");
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Classification failed", e.getCause());
+            respond(exchange, 500, "Classification failed: " + e.getCause().getMessage());
+            return null;
+        }
+        return results;
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        String body = stats() + requestLatency.buckets() + batcher.getQueueLatency().buckets() + batcher.getBatchLatency().buckets();
+        respond(exchange, 200, body, "text/plain; charset=utf-8");
+    }
+
+    private static void appendResult(StringBuilder json, String word, Map<Language, Double> scores) {
+        json.append('{');
+        if (word != null) {
+            json.append("\"word\":");
+            appendString(json, word);
+            json.append(',');
+        }
+        scores.entrySet().stream()
+                .max(Comparator.comparingDouble(Map.Entry::getValue))
+                .ifPresent(entry -> {
+                    json.append("\"language\":");
+                    appendString(json, entry.getKey().getIso6391());
+                    json.append(',');
+                });
+        json.append("\"scores\":{");
+        boolean first = true;
+        for (Map.Entry<Language, Double> entry : scores.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, entry.getKey().getIso6391());
+            json.append(':').append(entry.getValue());
+        }
+        json.append("}}");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String key = separator >= 0 ? parameter.substring(0, separator) : parameter;
+            if (name.equals(URLDecoder.decode(key, "UTF-8"))) {
+                return separator >= 0 ? URLDecoder.decode(parameter.substring(separator + 1), "UTF-8") : "";
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, body, status == 200 ? "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body, String contentType) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.chen.wentao.languageclassifier.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+
+    // Bucket i holds latencies in [2^(i-1), 2^i) microseconds, bucket 0 holds sub-microsecond latencies
+    private static final int BUCKETS = 40;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0));
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts.incrementAndGet(bucket);
+        totalCount.increment();
+        totalNanos.add(nanos);
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    public double meanMicros() {
+        long count = count();
+        return count > 0 ? totalNanos.sum() / 1000.0 / count : 0;
+    }
+
+    public long percentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("Invalid percentile (" + percentile + ")");
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(BUCKETS - 1);
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        return bucket == 0 ? 1 : 1L << bucket;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+    }
+
+    public String summary() {
+        return String.format("%s: count=%d, mean=%.1fus, p50<=%dus, p90<=%dus, p99<=%dus, p999<=%dus",
+                name, count(), meanMicros(), percentileMicros(50), percentileMicros(90), percentileMicros(99), percentileMicros(99.9));
+    }
+
+    public String buckets() {
+        StringBuilder str = new StringBuilder(name).append(System.lineSeparator());
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                str.append(String.format("  <%10dus: %d%n", upperBoundMicros(i), count));
+            }
+        }
+        return str.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.chen.wentao.languageclassifier.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class MicroBatcher<T, R> implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(MicroBatcher.class.getName());
+
+    // Weight of the newest batch size in the running average used to decide whether waiting for more requests pays off
+    private static final double BATCH_SIZE_SMOOTHING = 0.1;
+
+    private final Function<List<T>, List<R>> batchFunction;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request<T, R>> queue = new LinkedBlockingQueue<>();
+    private final Thread[] workers;
+    private final LatencyHistogram queueLatency = new LatencyHistogram("queue");
+    private final LatencyHistogram batchLatency = new LatencyHistogram("batch");
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private volatile double averageBatchSize = 1;
+    private volatile boolean running = true;
+
+    public MicroBatcher(Function<List<T>, List<R>> batchFunction, int maxBatchSize, long maxDelay, TimeUnit unit, int workerCount) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException(String.format("max batch size (%d) must be greater than 0", maxBatchSize));
+        if (maxDelay < 0) throw new IllegalArgumentException(String.format("max delay (%d) cannot be less than 0", maxDelay));
+        if (workerCount <= 0) throw new IllegalArgumentException(String.format("worker count (%d) must be greater than 0", workerCount));
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::run, "micro-batcher-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public CompletableFuture<R> submit(T input) {
+        if (!running) throw new RejectedExecutionException("Micro batcher is closed");
+        Request<T, R> request = new Request<>(input);
+        queue.add(request);
+        return request.future;
+    }
+
+    public List<CompletableFuture<R>> submitAll(List<T> inputs) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            futures.add(submit(input));
+        }
+        return futures;
+    }
+
+    private void run() {
+        List<Request<T, R>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Request<T, R> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Under light load a lone request is dispatched immediately rather than waiting out the delay bound
+                if (averageBatchSize >= 2 || !queue.isEmpty()) {
+                    long deadline = first.enqueuedNanos + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        Request<T, R> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                execute(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Request<T, R>> batch) {
+        long startTime = System.nanoTime();
+        List<T> inputs = new ArrayList<>(batch.size());
+        for (Request<T, R> request : batch) {
+            queueLatency.record(startTime - request.enqueuedNanos);
+            inputs.add(request.input);
+        }
+        try {
+            List<R> results = batchFunction.apply(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            // Complete every future even on an error, otherwise the callers waiting on them block forever
+            LOGGER.log(Level.WARNING, "Batch of " + batch.size() + " failed", e);
+            for (Request<T, R> request : batch) {
+                request.future.completeExceptionally(e);
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+        batchLatency.record(System.nanoTime() - startTime);
+        batches.increment();
+        batchedRequests.add(batch.size());
+        averageBatchSize += BATCH_SIZE_SMOOTHING * (batch.size() - averageBatchSize);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Request<T, R> request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new RejectedExecutionException("Micro batcher is closed"));
+        }
+    }
+
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    public LatencyHistogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    public double meanBatchSize() {
+        long count = batches.sum();
+        return count > 0 ? (double) batchedRequests.sum() / count : 0;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDelayNanos() {
+        return maxDelayNanos;
+    }
+
+    private static class Request<T, R> {
+        private final T input;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private Request(T input) {
+            this.input = input;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.chen.wentao.languageclassifier.server;
+
+import com.github.chen.wentao.languageclassifier.LanguageClassifier;
+import com.github.chen.wentao.languageclassifier.LanguageWordsDataSet;
+import com.github.chen.wentao.languageclassifier.ModelWarmup;
+import com.github.chen.wentao.languageclassifier.languages.Language;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Holds the model being served and replaces it without pausing requests. A new model is loaded, warmed up and
+ * validated on a background thread while the current one keeps serving; it is then published through a single
+ * volatile write. Readers take one reference per batch, so work in flight finishes on the model it started with and
+ * the old model is collected once the last such batch completes.
+ */
+public class ModelRegistry implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ModelRegistry.class.getName());
+
+    private volatile Model current;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "model-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ModelRegistry(LanguageClassifier languageClassifier) {
+        this.current = new Model(languageClassifier, 1, null);
+    }
+
+    public Model current() {
+        return current;
+    }
+
+    public LanguageClassifier currentClassifier() {
+        return current.getLanguageClassifier();
+    }
+
+    /**
+     * Loads, warms up and validates the saved classifier in the background, then swaps it in if it classifies the same
+     * languages and reaches {@code minAccuracy} on the first {@code sampleSize} words of {@code validationDataSet}, which
+     * should be held out from the loaded classifier's training data.
+     */
+    public CompletableFuture<LoadResult> loadAsync(String directoryName, LanguageWordsDataSet validationDataSet, int sampleSize, double minAccuracy) {
+        if (validationDataSet == null) throw new IllegalArgumentException("validation data set must not be null");
+        if (sampleSize <= 0) throw new IllegalArgumentException(String.format("sample size (%d) must be greater than 0", sampleSize));
+        return CompletableFuture.supplyAsync(() -> {
+            long startTime = System.nanoTime();
+            LanguageClassifier languageClassifier;
+            try {
+                languageClassifier = LanguageClassifier.loadFromFileBinary(directoryName);
+            } catch (IOException e) {
+                return LoadResult.rejected(directoryName, "failed to load: " + e.getMessage(), Double.NaN, System.nanoTime() - startTime);
+            }
+            Model previous = current;
+            if (!sameLanguages(previous.getLanguageClassifier().getLanguages(), languageClassifier.getLanguages())) {
+                return LoadResult.rejected(directoryName, "languages differ from the served model", Double.NaN, System.nanoTime() - startTime);
+            }
+            int words = Math.min(sampleSize, validationDataSet.numWords());
+            if (words == 0) {
+                return LoadResult.rejected(directoryName, "validation data set is empty", Double.NaN, System.nanoTime() - startTime);
+            }
+            double accuracy = languageClassifier.accuracy(words, validationDataSet);
+            if (accuracy < minAccuracy) {
+                return LoadResult.rejected(directoryName, String.format("accuracy %.4f below %.4f", accuracy, minAccuracy), accuracy, System.nanoTime() - startTime);
+            }
+            ModelWarmup.Report warmup = ModelWarmup.warmUp(languageClassifier, new Random());
+            LOGGER.info(() -> "Warmed up model from " + directoryName + ": " + warmup);
+            Model model;
+            synchronized (this) {
+                model = new Model(languageClassifier, current.getVersion() + 1, directoryName);
+                current = model;
+            }
+            LOGGER.info(() -> String.format("Swapped in model %d from %s (accuracy %.4f)", model.getVersion(), directoryName, accuracy));
+            return new LoadResult(directoryName, true, null, model.getVersion(), accuracy, System.nanoTime() - startTime);
+        }, loader);
+    }
+
+    /**
+     * Replaces the model immediately, without validation.
+     */
+    public synchronized Model swap(LanguageClassifier languageClassifier) {
+        Model model = new Model(languageClassifier, current.getVersion() + 1, null);
+        current = model;
+        return model;
+    }
+
+    @Override
+    public void close() {
+        loader.shutdownNow();
+    }
+
+    private static boolean sameLanguages(Language[] languages, Language[] otherLanguages) {
+        Comparator<Language> order = Comparator.comparing(Language::getIso6391);
+        Language[] sorted = languages.clone();
+        Language[] otherSorted = otherLanguages.clone();
+        Arrays.sort(sorted, order);
+        Arrays.sort(otherSorted, order);
+        return Arrays.equals(Arrays.stream(sorted).map(Language::getIso6391).toArray(), Arrays.stream(otherSorted).map(Language::getIso6391).toArray());
+    }
+
+    public static class Model {
+        private final LanguageClassifier languageClassifier;
+        private final long version;
+        private final String source;
+        private final long loadedAtMillis = System.currentTimeMillis();
+
+        private Model(LanguageClassifier languageClassifier, long version, String source) {
+            this.languageClassifier = languageClassifier;
+            this.version = version;
+            this.source = source;
+        }
+
+        public LanguageClassifier getLanguageClassifier() {
+            return languageClassifier;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the directory the model was loaded from, or null if it was not loaded by the registry
+         */
+        public String getSource() {
+            return source;
+        }
+
+        public long getLoadedAtMillis() {
+            return loadedAtMillis;
+        }
+    }
+
+    public static class LoadResult {
+        private final String directoryName;
+        private final boolean swapped;
+        private final String reason;
+        private final long version;
+        private final double accuracy;
+        private final long nanos;
+
+        private LoadResult(String directoryName, boolean swapped, String reason, long version, double accuracy, long nanos) {
+            this.directoryName = directoryName;
+            this.swapped = swapped;
+            this.reason = reason;
+            this.version = version;
+            this.accuracy = accuracy;
+            this.nanos = nanos;
+        }
+
+        private static LoadResult rejected(String directoryName, String reason, double accuracy, long nanos) {
+            LOGGER.warning(() -> "Rejected model from " + directoryName + ": " + reason);
+            return new LoadResult(directoryName, false, reason, 0, accuracy, nanos);
+        }
+
+        public String getDirectoryName() {
+            return directoryName;
+        }
+
+        public boolean isSwapped() {
+            return swapped;
+        }
+
+        /**
+         * @return why the model was not swapped in, or null if it was
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public double getAccuracy() {
+            return accuracy;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.chen.wentao.languageclassifier;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorInferenceKernel implements InferenceKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final int hiddenUnits;
+    private final int outputs;
+    private final float[] firstLayer;
+    private final float[] outputBiases;
+    // outputs x hiddenUnits without the bias column, so every output is a contiguous dot product
+    private final float[] outputWeights;
+
+    VectorInferenceKernel(int hiddenUnits, int outputs, float[] firstLayer, float[] secondLayer) {
+        this.hiddenUnits = hiddenUnits;
+        this.outputs = outputs;
+        this.firstLayer = firstLayer;
+        this.outputBiases = new float[outputs];
+        this.outputWeights = new float[outputs * hiddenUnits];
+        for (int i = 0; i < outputs; i++) {
+            outputBiases[i] = secondLayer[i * (hiddenUnits + 1)];
+            System.arraycopy(secondLayer, i * (hiddenUnits + 1) + 1, outputWeights, i * hiddenUnits, hiddenUnits);
+        }
+    }
+
+    @Override
+    public void forward(int[] columns, int count, float[] hidden, float[] output) {
+        int bound = SPECIES.loopBound(hiddenUnits);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            FloatVector sum = FloatVector.fromArray(SPECIES, firstLayer, j);
+            for (int k = 0; k < count; k++) {
+                sum = sum.add(FloatVector.fromArray(SPECIES, firstLayer, (columns[k] + 1) * hiddenUnits + j));
+            }
+            FloatVector activation = FloatVector.broadcast(SPECIES, 1f).div(sum.neg().lanewise(VectorOperators.EXP).add(1f));
+            activation.intoArray(hidden, j);
+        }
+        for (; j < hiddenUnits; j++) {
+            float sum = firstLayer[j];
+            for (int k = 0; k < count; k++) {
+                sum += firstLayer[(columns[k] + 1) * hiddenUnits + j];
+            }
+            hidden[j] = sigmoid(sum);
+        }
+        for (int i = 0; i < outputs; i++) {
+            int base = i * hiddenUnits;
+            FloatVector sum = FloatVector.zero(SPECIES);
+            int h = 0;
+            for (; h < bound; h += SPECIES.length()) {
+                sum = FloatVector.fromArray(SPECIES, outputWeights, base + h).fma(FloatVector.fromArray(SPECIES, hidden, h), sum);
+            }
+            float z = outputBiases[i] + sum.reduceLanes(VectorOperators.ADD);
+            for (; h < hiddenUnits; h++) {
+                z += outputWeights[base + h] * hidden[h];
+            }
+            output[i] = sigmoid(z);
+        }
+    }
+
+    private static float sigmoid(float z) {
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES + ")";
+    }
+}